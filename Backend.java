@@ -3,7 +3,9 @@ import java.io.IOException;
 import java.util.*;
 
 public class Backend implements BackendInterface{
-  private GraphADT<String, Double> graph;
+  // replaced as a whole by loadGraphData, so concurrent queries see either
+  // the old or the new graph
+  private volatile GraphADT<String, Double> graph;
   /**
   * Sets an instance of the GraphADT graph
   */
@@ -19,7 +21,9 @@ public class Backend implements BackendInterface{
    */
   @Override
   public void loadGraphData(String filename) throws IOException {
-    graph = new DijkstraGraph<>();
+    // collect every edge first, then build the whole graph in one step, with
+    // weights stored as primitive doubles
+    GraphBuilder<String> builder = new GraphBuilder<>();
     try(Scanner scanner = new Scanner(new File(filename))){
       while(scanner.hasNextLine()){
         try{
@@ -36,9 +40,7 @@ public class Backend implements BackendInterface{
             String endNode = endWeight[0].trim().replaceAll("\"", "");
             double weight = Double.parseDouble(endWeight[1].replace(";","").replace("]", "").trim());
 
-            graph.insertNode(startNode);
-            graph.insertNode(endNode);
-            graph.insertEdge(startNode, endNode, weight);
+            builder.addEdge(startNode, endNode, weight);
           }
         }
         catch(Exception e){
@@ -47,7 +49,9 @@ public class Backend implements BackendInterface{
         }
       }
     }
-
+    // the loaded graph is shared by every request, so queries may run on many
+    // threads at once
+    graph = new ConcurrentDijkstraGraph<>(builder.build());
   }
 
   /**
@@ -71,9 +75,7 @@ public class Backend implements BackendInterface{
    */
   @Override
   public List<String> findLocationsOnShortestPath(String startLocation, String endLocation) {
-    if(!graph.containsNode(startLocation) || !graph.containsNode(endLocation))
-        return Collections.emptyList();
-    return graph.shortestPathData(startLocation, endLocation);
+    return findShortestPath(startLocation, endLocation).getNodes();
   }
 
   /**
@@ -87,22 +89,30 @@ public class Backend implements BackendInterface{
    */
   @Override
   public List<Double> findTimesOnShortestPath(String startLocation, String endLocation) {
-    List<String> path = findLocationsOnShortestPath(startLocation, endLocation);
-    List<Double> times = new ArrayList<>();
-    if(path.isEmpty() || path.size() < 2)
-      return times; //Return empty list, no valid path
-    //Iterate over the path and process edges between consecutive nodes 
-    for(int i = 0; i<path.size() - 1; i++){
-      String start = path.get(i);
-      String end = path.get(i + 1);
-      //Try to add the edge data to times list
-      try{
-        times.add(graph.getEdge(start, end));
-      }catch(Exception e){
-	System.out.println("Unable to add edge: " + e.getMessage());
-      }
+    return findShortestPath(startLocation, endLocation).getLegCosts();
+  }
+
+  /**
+   * Return the locations along the shortest path from startLocation to endLocation, together with
+   * the walking time in seconds of each step, the time to reach each location, and the total time,
+   * all from one search. The step times are read from the path's edges rather than looked up again.
+   *
+   * @param startLocation the start location of the path
+   * @param endLocation   the end location of the path
+   * @return the locations and times along the shortest path, or an empty result if no such path
+   * exists
+   */
+  @Override
+  public PathResult<String> findShortestPath(String startLocation, String endLocation) {
+    // read the field once, so that a concurrent load cannot swap graphs mid-query
+    GraphADT<String, Double> graph = this.graph;
+    if(!graph.containsNode(startLocation) || !graph.containsNode(endLocation))
+      return PathResult.empty();
+    try{
+      return graph.shortestPath(startLocation, endLocation);
+    }catch(NoSuchElementException e){
+      return PathResult.empty(); //No valid path
     }
-    return times;
   }
 
   /**
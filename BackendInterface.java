@@ -51,6 +51,17 @@ public interface BackendInterface {
    *         list if no such path exists
    */
   public List<Double> findTimesOnShortestPath(String startLocation, String endLocation);
+
+  /**
+   * Return the locations along the shortest path from startLocation to
+   * endLocation, together with the walking time in seconds of each step, the
+   * time to reach each location, and the total time, all from one search.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return the locations and times along the shortest path, or an empty
+   *         result if no such path exists
+   */
+  public PathResult<String> findShortestPath(String startLocation, String endLocation);
     
   /**
    * Returns the list of locations that can be reached when starting from the 
@@ -40,6 +40,10 @@ public class Backend_Placeholder implements BackendInterface{
     return times;
   }
     
+  public PathResult<String> findShortestPath(String startLocation, String endLocation) {
+    return graph.shortestPath(startLocation,endLocation);
+  }
+
   // always returns entire list of locations
   public List<String> getReachableFromWithin(String startLocation, double travelTime) throws NoSuchElementException {
     return graph.getAllNodes();
@@ -1,5 +1,7 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
 /**
@@ -8,15 +10,48 @@ import java.util.NoSuchElementException;
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
+    // Nodes with more leaving edges than this index them by successor
+    protected static final int SUCCESSOR_INDEX_THRESHOLD = 8;
+
     // Each node contains unique data along with two lists of directed edges
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public int id = -1; // dense id assigned by the graph's NodeIndex
+        public EdgeList edgesLeaving = new EdgeList(true);
+        public EdgeList edgesEntering = new EdgeList(false);
+        // leaving edges by successor, built once the node's degree grows large
+        protected MapADT<Node, Edge> successors = null;
 
         public Node(NodeType data) {
             this.data = data;
         }
+
+        // finds the edge leaving this node toward succ, or returns null
+        public Edge findLeaving(Node succ) {
+            if (successors != null)
+                return successors.getOrNull(succ);
+            for (Edge edge : edgesLeaving)
+                if (edge.successor == succ)
+                    return edge;
+            return null;
+        }
+
+        public void addLeaving(Edge edge) {
+            edgesLeaving.add(edge);
+            if (successors != null) {
+                successors.put(edge.successor, edge);
+            } else if (edgesLeaving.size() > SUCCESSOR_INDEX_THRESHOLD) {
+                successors = new OpenAddressingHashtableMap<>(edgesLeaving.size() * 4);
+                for (Edge leaving : edgesLeaving)
+                    successors.put(leaving.successor, leaving);
+            }
+        }
+
+        public void removeLeaving(Edge edge) {
+            edgesLeaving.remove(edge);
+            if (successors != null)
+                successors.remove(edge.successor);
+        }
     }
 
     // Nodes can be retrieved from this map by their unique data
@@ -27,17 +62,159 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         public EdgeType data; // the weight or cost of this edge
         public Node predecessor;
         public Node successor;
+        // positions of this edge in its predecessor's and successor's lists
+        public int leavingIndex = -1;
+        public int enteringIndex = -1;
 
         public Edge(EdgeType data, Node pred, Node succ) {
             this.data = data;
             this.predecessor = pred;
             this.successor = succ;
         }
+
+        // the weight of this edge as a primitive double
+        public double weight() {
+            return data.doubleValue();
+        }
+
+        // the weight of this edge as an EdgeType
+        public EdgeType getData() {
+            return data;
+        }
     }
 
     protected int edgeCount = 0;
     // Edges can be retrieved through the edge lists in either connected node
 
+    // When set, removing an edge keeps the order of the remaining edges in
+    // each list, at the cost of shifting them down; otherwise the last edge of
+    // the list is moved into the removed edge's place in constant time
+    protected final boolean stableEdgeOrder;
+
+    // Array-backed list of the edges leaving or entering one node. Each edge
+    // records its position in both of its lists, so it can be removed from
+    // either one without searching.
+    protected class EdgeList extends AbstractList<Edge> {
+        protected final boolean leaving; // whether this lists edges leaving its node
+        protected Object[] edges = new Object[4];
+        protected int size = 0;
+
+        public EdgeList(boolean leaving) {
+            this.leaving = leaving;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Edge get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException(index);
+            return (Edge) edges[index];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // grows the backing array to hold at least capacity edges
+        public void ensureCapacity(int capacity) {
+            if (capacity > edges.length)
+                edges = Arrays.copyOf(edges, capacity);
+        }
+
+        public boolean add(Edge edge) {
+            if (size == edges.length)
+                edges = Arrays.copyOf(edges, size * 2);
+            edges[size] = edge;
+            setIndex(edge, size++);
+            modCount++;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Edge remove(int index) {
+            Edge removed = get(index);
+            if (stableEdgeOrder) {
+                System.arraycopy(edges, index + 1, edges, index, size - index - 1);
+                for (int i = index; i < size - 1; i++)
+                    setIndex((Edge) edges[i], i);
+            } else if (index != size - 1) {
+                edges[index] = edges[size - 1];
+                setIndex((Edge) edges[index], index);
+            }
+            edges[--size] = null;
+            setIndex(removed, -1);
+            modCount++;
+            return removed;
+        }
+
+        // removes an edge through its recorded position, without searching
+        public boolean remove(Object o) {
+            if (!(o instanceof BaseGraph.Edge))
+                return false;
+            @SuppressWarnings("unchecked")
+            Edge edge = (Edge) o;
+            int index = leaving ? edge.leavingIndex : edge.enteringIndex;
+            if (index < 0 || index >= size || edges[index] != edge)
+                return false;
+            remove(index);
+            return true;
+        }
+
+        protected void setIndex(Edge edge, int index) {
+            if (leaving)
+                edge.leavingIndex = index;
+            else
+                edge.enteringIndex = index;
+        }
+    }
+
+    // Assigns every node a dense int id when it is inserted, and finds nodes by
+    // id. Ids are dense, so the id-keyed table is a plain array indexed by id,
+    // and the ids of removed nodes are handed out again before new ones.
+    protected class NodeIndex {
+        protected Node[] nodesById;
+        protected int[] freeIds = new int[8];
+        protected int freeCount = 0;
+        protected int idBound = 0; // every id in use is below this bound
+
+        @SuppressWarnings("unchecked")
+        public NodeIndex() {
+            nodesById = (Node[]) java.lang.reflect.Array.newInstance(Node.class, 16);
+        }
+
+        public int add(Node node) {
+            int id = freeCount > 0 ? freeIds[--freeCount] : idBound++;
+            if (id == nodesById.length)
+                nodesById = Arrays.copyOf(nodesById, nodesById.length * 2);
+            nodesById[id] = node;
+            node.id = id;
+            return id;
+        }
+
+        public void remove(Node node) {
+            nodesById[node.id] = null;
+            if (freeCount == freeIds.length)
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            freeIds[freeCount++] = node.id;
+        }
+
+        public Node nodeOf(int id) {
+            return id >= 0 && id < idBound ? nodesById[id] : null;
+        }
+
+        public int idBound() {
+            return idBound;
+        }
+    }
+
+    protected NodeIndex nodeIndex = new NodeIndex();
+
+    // Counts the mutations of this graph, so that derived structures such as
+    // the CSR snapshot can tell whether they are still current
+    protected long modCount = 0;
+    protected volatile CompressedGraph<NodeType> snapshot = null;
+    // Notified of every mutation, in the order they were added
+    protected List<GraphListener<NodeType, EdgeType>> listeners = new ArrayList<>();
+
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
      * 
@@ -45,7 +222,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *        it is stored in
      */
     public BaseGraph(MapADT<NodeType, Node> map) {
+        this(map, false);
+    }
+
+    /**
+     * Constructor for BaseGraph that provides the map the graph uses, and
+     * whether edge removal must keep the order of the remaining edges.
+     *
+     * @param map the map the graph uses to map a data object to the node object
+     *        it is stored in
+     * @param stableEdgeOrder true to keep each node's edges in insertion order
+     *        across removals, which makes removal linear in the node's degree
+     */
+    public BaseGraph(MapADT<NodeType, Node> map, boolean stableEdgeOrder) {
         this.nodes = map;
+        this.stableEdgeOrder = stableEdgeOrder;
     }
 
     /**
@@ -57,12 +248,32 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @throws NullPointerException if data is null
      */
     public boolean insertNode(NodeType data) {
-        if (nodes.containsKey(data))
-            return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        // a single probe of the map both checks for and adds the node
+        int sizeBefore = nodes.getSize();
+        nodes.computeIfAbsent(data, this::createNode); // throws NPE when data's null
+        if (nodes.getSize() == sizeBefore)
+            return false;
+        modCount++;
+        if (!listeners.isEmpty()) {
+            int id = idOf(data);
+            for (GraphListener<NodeType, EdgeType> listener : listeners)
+                listener.nodeInserted(modCount, data, id);
+        }
         return true;
     }
 
+    /**
+     * Creates the node for new data, and assigns it the next free id.
+     *
+     * @param data is the data item stored in the new node
+     * @return the new node
+     */
+    protected Node createNode(NodeType data) {
+        Node node = new Node(data);
+        nodeIndex.add(node);
+        return node;
+    }
+
     /**
      * Remove a node from the graph.
      * And also remove all edges adjacent to that node.
@@ -77,12 +288,29 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
+        nodeIndex.remove(oldNode);
         // remove all edges entering neighboring nodes from this one
+        int removedEdges = oldNode.edgesLeaving.size();
         for (Edge edge : oldNode.edgesLeaving)
-            edge.successor.edgesEntering.remove(edge);
+            if (edge.successor != oldNode)
+                edge.successor.edgesEntering.remove(edge);
         // remove all edges leaving neighboring nodes toward this one
         for (Edge edge : oldNode.edgesEntering)
-            edge.predecessor.edgesLeaving.remove(edge);
+            if (edge.predecessor != oldNode) {
+                edge.predecessor.removeLeaving(edge);
+                removedEdges++;
+            }
+        this.edgeCount -= removedEdges;
+        modCount++;
+        if (!listeners.isEmpty()) {
+            for (Edge edge : oldNode.edgesLeaving)
+                fireEdgeRemoved(edge);
+            for (Edge edge : oldNode.edgesEntering)
+                if (edge.predecessor != oldNode)
+                    fireEdgeRemoved(edge);
+            for (GraphListener<NodeType, EdgeType> listener : listeners)
+                listener.nodeRemoved(modCount, oldNode.data, oldNode.id);
+        }
         return true;
     }
 
@@ -98,12 +326,48 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     /**
-     * Retrieves a list of all node data from this graph.
+     * Retrieves a list of all node data from this graph. The returned list is
+     * unmodifiable and shared between calls until nodes are inserted or removed.
      *
      * @return list of all node data
      */
     public List<NodeType> getAllNodes(){
-        return nodes.getKeys();
+        return nodes.getKeySnapshot();
+    }
+
+    /**
+     * Retrieves the dense id of the node that stores some data. Ids are in the
+     * range [0, getNodeIdBound()), and the id of a removed node may later be
+     * assigned to another node.
+     *
+     * @param data the node contents to look up
+     * @return the id of that node, or -1 if data is not stored in this graph
+     * @throws NullPointerException if data is null
+     */
+    public int idOf(NodeType data) {
+        Node node = nodes.getOrNull(data);
+        return node == null ? -1 : node.id;
+    }
+
+    /**
+     * Retrieves the data of the node with a dense id.
+     *
+     * @param id the id of the node
+     * @return the data in that node, or null if no node currently has that id
+     */
+    public NodeType nodeOf(int id) {
+        Node node = nodeIndex.nodeOf(id);
+        return node == null ? null : node.data;
+    }
+
+    /**
+     * Retrieves an upper bound on the ids of this graph's nodes, which can be
+     * used to size arrays indexed by node id.
+     *
+     * @return a number greater than the id of every node in the graph
+     */
+    public int getNodeIdBound() {
+        return nodeIndex.idBound();
     }
 
     /**
@@ -128,25 +392,53 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      */
     public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
         // find nodes associated with node data, and return false when not found
-        Node predNode = nodes.get(pred);
-        Node succNode = nodes.get(succ);
+        Node predNode = nodes.getOrNull(pred);
+        Node succNode = nodes.getOrNull(succ);
         if (predNode == null || succNode == null)
             return false;
-        try {
+        Edge existingEdge = predNode.findLeaving(succNode);
+        if (existingEdge != null) {
             // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
+            EdgeType oldWeight = existingEdge.data;
             existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
+            modCount++;
+            fireEdgeUpdated(existingEdge, oldWeight);
+        } else {
             // otherwise create a new edges
             Edge newEdge = new Edge(weight, predNode, succNode);
-            this.edgeCount++;
-            // and insert it into each of its adjacent nodes' respective lists
-            predNode.edgesLeaving.add(newEdge);
-            succNode.edgesEntering.add(newEdge);
+            addEdge(newEdge);
+            modCount++;
+            fireEdgeInserted(newEdge);
         }
         return true;
     }
 
+    /**
+     * Sizes the edge lists of a node for a known number of edges, so that
+     * adding them does not grow the lists repeatedly.
+     *
+     * @param id the id of the node
+     * @param leaving the number of edges that will leave the node
+     * @param entering the number of edges that will enter the node
+     */
+    protected void reserveEdges(int id, int leaving, int entering) {
+        Node node = nodeIndex.nodeOf(id);
+        node.edgesLeaving.ensureCapacity(leaving);
+        node.edgesEntering.ensureCapacity(entering);
+    }
+
+    /**
+     * Adds a new edge to the edge lists of both its nodes, and counts it.
+     *
+     * @param newEdge the edge to add, which is not yet in the graph
+     */
+    protected void addEdge(Edge newEdge) {
+        this.edgeCount++;
+        // insert it into each of its adjacent nodes' respective lists
+        newEdge.predecessor.addLeaving(newEdge);
+        newEdge.successor.edgesEntering.add(newEdge);
+    }
+
     /**
      * Remove an edge from the graph.
      * 
@@ -156,19 +448,18 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
+        Edge oldEdge = findEdge(pred, succ);
+        // when no such edge exists, return false
+        if (oldEdge == null)
             return false;
-        }
+        // otherwise remove it from the edge lists of each adjacent node
+        oldEdge.predecessor.removeLeaving(oldEdge);
+        oldEdge.successor.edgesEntering.remove(oldEdge);
+        // and decrement the edge count before removing
+        this.edgeCount--;
+        modCount++;
+        fireEdgeRemoved(oldEdge);
+        return true;
     }
 
     /**
@@ -179,12 +470,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return findEdge(pred, succ) != null;
     }
 
     /**
@@ -197,19 +483,34 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *                                are not found within this graph
      */
     public EdgeType getEdge(NodeType pred, NodeType succ) {
-        return getEdgeHelper(pred, succ).data;
+        return getEdgeHelper(pred, succ).getData();
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
-        for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
-                return edge;
+        Edge edge = findEdge(pred, succ);
         // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return edge;
+    }
+
+    /**
+     * Finds the edge between two nodes without throwing or allocating. High
+     * degree nodes find it through their successor index, in constant time.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the edge between those nodes, or null if either node or the edge
+     *         between them are not found within this graph
+     */
+    protected Edge findEdge(NodeType pred, NodeType succ) {
+        if (pred == null || succ == null)
+            return null;
+        Node predNode = nodes.getOrNull(pred);
+        Node succNode = nodes.getOrNull(succ);
+        if (predNode == null || succNode == null)
+            return null;
+        return predNode.findLeaving(succNode);
     }
 
     /**
@@ -221,5 +522,169 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return this.edgeCount;
     }
 
+    /**
+     * Returns the number of mutations made to this graph so far. Every
+     * successful node or edge insertion, update or removal increments it.
+     *
+     * @return the modification count of this graph
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Registers a listener to be notified after every later mutation of this
+     * graph, with the exact nodes and edges that mutation touched.
+     *
+     * @param listener the listener to add
+     */
+    public void addGraphListener(GraphListener<NodeType, EdgeType> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops notifying a listener of mutations.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener had been registered
+     */
+    public boolean removeGraphListener(GraphListener<NodeType, EdgeType> listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners that an edge was inserted, once modCount counts
+     * that mutation.
+     *
+     * @param edge the new edge
+     */
+    protected void fireEdgeInserted(Edge edge) {
+        for (GraphListener<NodeType, EdgeType> listener : listeners)
+            listener.edgeInserted(modCount, edge.predecessor.data, edge.successor.data,
+                    edge.getData());
+    }
+
+    /**
+     * Notifies the listeners that the weight of an edge was replaced, once
+     * modCount counts that mutation.
+     *
+     * @param edge the updated edge
+     * @param oldWeight the weight the edge had before
+     */
+    protected void fireEdgeUpdated(Edge edge, EdgeType oldWeight) {
+        for (GraphListener<NodeType, EdgeType> listener : listeners)
+            listener.edgeUpdated(modCount, edge.predecessor.data, edge.successor.data,
+                    oldWeight, edge.getData());
+    }
+
+    /**
+     * Notifies the listeners that an edge was removed, once modCount counts
+     * that mutation.
+     *
+     * @param edge the removed edge
+     */
+    protected void fireEdgeRemoved(Edge edge) {
+        for (GraphListener<NodeType, EdgeType> listener : listeners)
+            listener.edgeRemoved(modCount, edge.predecessor.data, edge.successor.data,
+                    edge.getData());
+    }
+
+    /**
+     * Returns an immutable CSR snapshot of this graph. The snapshot is compiled
+     * on the first call after a mutation and shared by every later call until
+     * the graph changes again, so that many queries share one compile step.
+     *
+     * @return a snapshot of the current nodes and edges of this graph
+     */
+    public CompressedGraph<NodeType> snapshot() {
+        CompressedGraph<NodeType> current = snapshot;
+        if (current != null && current.getVersion() == modCount)
+            return current;
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.getVersion() != modCount)
+                snapshot = current = compileSnapshot();
+            return current;
+        }
+    }
+
+    /**
+     * Compiles the nodes and edges of this graph into CSR arrays, indexed by
+     * node id, with the edges of each node sorted by the id of the other end.
+     *
+     * @return a new snapshot of this graph
+     */
+    protected CompressedGraph<NodeType> compileSnapshot() {
+        int bound = nodeIndex.idBound();
+        Object[] nodeData = new Object[bound];
+        int[] offsets = new int[bound + 1];
+        int[] reverseOffsets = new int[bound + 1];
+        for (int id = 0; id < bound; id++) {
+            Node node = nodeIndex.nodeOf(id);
+            if (node != null) {
+                nodeData[id] = node.data;
+                offsets[id + 1] = node.edgesLeaving.size();
+                reverseOffsets[id + 1] = node.edgesEntering.size();
+            }
+        }
+        for (int id = 0; id < bound; id++) {
+            offsets[id + 1] += offsets[id];
+            reverseOffsets[id + 1] += reverseOffsets[id];
+        }
+        int[] targets = new int[offsets[bound]];
+        double[] weights = new double[offsets[bound]];
+        int[] sources = new int[reverseOffsets[bound]];
+        double[] reverseWeights = new double[reverseOffsets[bound]];
+        long[] row = new long[8];
+        for (int id = 0; id < bound; id++) {
+            Node node = nodeIndex.nodeOf(id);
+            if (node == null)
+                continue;
+            row = fillRow(node.edgesLeaving, true, row, offsets[id], targets, weights);
+            row = fillRow(node.edgesEntering, false, row, reverseOffsets[id], sources,
+                    reverseWeights);
+        }
+        return new CompressedGraph<>(modCount, nodeData, offsets, targets, weights,
+                reverseOffsets, sources, reverseWeights);
+    }
+
+    /**
+     * Copies one node's edge list into a row of CSR arrays, sorted by the id of
+     * the node at the other end of each edge.
+     *
+     * @param edges the edges leaving or entering one node
+     * @param leaving true if the other end of each edge is its successor
+     * @param row scratch space, replaced by a larger array when too small
+     * @param start the first position of this row in ends and weights
+     * @param ends receives the id of the other end of each edge
+     * @param weights receives the weight of each edge
+     * @return the scratch space, for reuse by the next row
+     */
+    private long[] fillRow(List<Edge> edges, boolean leaving, long[] row, int start, int[] ends,
+            double[] weights) {
+        if (row.length < edges.size())
+            row = new long[edges.size() * 2];
+        int count = 0;
+        for (Edge edge : edges) {
+            Node other = leaving ? edge.successor : edge.predecessor;
+            ends[start + count] = other.id;
+            weights[start + count] = edge.weight();
+            // sort each (id, position) pair in one long, id in the high half
+            row[count] = ((long) other.id << 32) | count;
+            count++;
+        }
+        Arrays.sort(row, 0, count);
+        int[] sortedEnds = new int[count];
+        double[] sortedWeights = new double[count];
+        for (int i = 0; i < count; i++) {
+            int from = start + (int) row[i];
+            sortedEnds[i] = ends[from];
+            sortedWeights[i] = weights[from];
+        }
+        System.arraycopy(sortedEnds, 0, ends, start, count);
+        System.arraycopy(sortedWeights, 0, weights, start, count);
+        return row;
+    }
+
 }
 
@@ -0,0 +1,236 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable compressed sparse row (CSR) copy of a BaseGraph, for read-only
+ * querying. The edges leaving the node with id u are stored at positions
+ * offsets[u] to offsets[u+1]-1 of the targets and weights arrays, sorted by
+ * target id. A second, reverse CSR stores the edges entering every node.
+ * Node ids are the dense ids of the graph the snapshot was compiled from;
+ * ids that were free at that time have no edges and no data.
+ */
+public class CompressedGraph<NodeType> {
+
+    protected final long version; // modification count of the graph when compiled
+    protected final Object[] nodeData; // data of each node, by id
+    protected final MapADT<NodeType, Integer> ids; // id of each node, by data
+    protected final int edgeCount;
+
+    protected final int[] offsets;
+    protected final int[] targets;
+    protected final double[] weights;
+
+    protected final int[] reverseOffsets;
+    protected final int[] sources;
+    protected final double[] reverseWeights;
+
+    /**
+     * Constructs a new CompressedGraph from arrays compiled by a BaseGraph.
+     *
+     * @param version the modification count of the graph when compiled
+     * @param nodeData the data of each node, by id, with null for free ids
+     * @param offsets the start of each node's leaving edges, plus a final end
+     * @param targets the successor id of each leaving edge, sorted per node
+     * @param weights the weight of each leaving edge
+     * @param reverseOffsets the start of each node's entering edges, plus a
+     *        final end
+     * @param sources the predecessor id of each entering edge, sorted per node
+     * @param reverseWeights the weight of each entering edge
+     */
+    @SuppressWarnings("unchecked")
+    public CompressedGraph(long version, Object[] nodeData, int[] offsets, int[] targets,
+            double[] weights, int[] reverseOffsets, int[] sources, double[] reverseWeights) {
+        this.version = version;
+        this.nodeData = nodeData;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.reverseOffsets = reverseOffsets;
+        this.sources = sources;
+        this.reverseWeights = reverseWeights;
+        this.edgeCount = targets.length;
+        this.ids = new OpenAddressingHashtableMap<>(nodeData.length * 2);
+        for (int id = 0; id < nodeData.length; id++)
+            if (nodeData[id] != null) ids.put((NodeType) nodeData[id], id);
+    }
+
+    /**
+     * Retrieves the modification count of the graph this snapshot was compiled
+     * from, at the time it was compiled.
+     *
+     * @return the graph's modification count
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retrieves the id of the node that stores some data.
+     *
+     * @param data the node contents to look up
+     * @return the id of that node, or -1 if data is null or not in this graph
+     */
+    public int idOf(NodeType data) {
+        if (data == null) return -1;
+        Integer id = ids.getOrNull(data);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Retrieves the data of the node with an id.
+     *
+     * @param id the id of the node
+     * @return the data in that node, or null if no node had that id
+     */
+    @SuppressWarnings("unchecked")
+    public NodeType nodeOf(int id) {
+        return (NodeType) nodeData[id];
+    }
+
+    /**
+     * Retrieves an upper bound on node ids, for sizing arrays indexed by id.
+     *
+     * @return a number greater than the id of every node
+     */
+    public int getNodeIdBound() {
+        return nodeData.length;
+    }
+
+    /**
+     * Return the number of nodes in the graph.
+     *
+     * @return the number of nodes in the graph
+     */
+    public int getNodeCount() {
+        return ids.getSize();
+    }
+
+    /**
+     * Return the number of edges in the graph.
+     *
+     * @return the number of edges in the graph
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Finds the position of the edge between two nodes in the targets and
+     * weights arrays, by binary search over the predecessor's sorted row.
+     *
+     * @param pred the id of the source node for the edge
+     * @param succ the id of the target node for the edge
+     * @return the position of that edge, or -1 if there is no such edge
+     */
+    public int edgeIndex(int pred, int succ) {
+        if (pred < 0 || pred >= nodeData.length)
+            return -1;
+        int low = offsets[pred];
+        int high = offsets[pred + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (targets[mid] < succ)
+                low = mid + 1;
+            else if (targets[mid] > succ)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Check if an edge is in the graph.
+     *
+     * @param pred the id of the source node for the edge
+     * @param succ the id of the target node for the edge
+     * @return true if the edge is found in the graph, or false otherwise
+     */
+    public boolean containsEdge(int pred, int succ) {
+        return edgeIndex(pred, succ) >= 0;
+    }
+
+    /**
+     * Return the weight of the edge between two nodes.
+     *
+     * @param pred the id of the source node for the edge
+     * @param succ the id of the target node for the edge
+     * @return the weight of the edge between those nodes
+     * @throws NoSuchElementException if there is no such edge
+     */
+    public double getEdgeWeight(int pred, int succ) {
+        int index = edgeIndex(pred, succ);
+        if (index < 0)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return weights[index];
+    }
+
+    /**
+     * Computes the shortest path between two nodes by Dijkstra's algorithm
+     * over the CSR arrays.
+     *
+     * @param start the id of the starting node
+     * @param end the id of the destination node
+     * @return the ids of the nodes along the shortest path, starting with
+     *         start and ending with end
+     * @throws NoSuchElementException if either id has no node, or there is no
+     *         path from start to end
+     */
+    public int[] shortestPathIds(int start, int end) {
+        int[] predecessors = new int[nodeData.length];
+        search(start, end, predecessors);
+        int length = 1;
+        for (int id = end; id != start; id = predecessors[id]) length++;
+        int[] path = new int[length];
+        for (int id = end, i = length - 1; i >= 0; id = predecessors[id], i--) path[i] = id;
+        return path;
+    }
+
+    /**
+     * Computes the cost of the shortest path between two nodes by Dijkstra's
+     * algorithm over the CSR arrays.
+     *
+     * @param start the id of the starting node
+     * @param end the id of the destination node
+     * @return the sum of the edge weights along the shortest path
+     * @throws NoSuchElementException if either id has no node, or there is no
+     *         path from start to end
+     */
+    public double shortestPathCost(int start, int end) {
+        return search(start, end, new int[nodeData.length]);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from start until end is settled, using an
+     * IndexedMinHeap over node ids.
+     *
+     * @param start the id of the starting node
+     * @param end the id of the destination node
+     * @param predecessors receives the predecessor id of every settled node
+     * @return the cost of the shortest path from start to end
+     * @throws NoSuchElementException if either id has no node, or there is no
+     *         path from start to end
+     */
+    protected double search(int start, int end, int[] predecessors) {
+        if (start < 0 || end < 0 || start >= nodeData.length || end >= nodeData.length
+                || nodeData[start] == null || nodeData[end] == null)
+            throw new NoSuchElementException("Start or end node not found.");
+        boolean[] settled = new boolean[nodeData.length];
+        IndexedMinHeap heap = new IndexedMinHeap(nodeData.length);
+        heap.insertOrDecrease(start, 0);
+        predecessors[start] = start;
+        while (!heap.isEmpty()) {
+            int id = heap.peek();
+            double cost = heap.keyOf(id);
+            heap.poll();
+            settled[id] = true;
+            if (id == end)
+                return cost;
+            for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                int target = targets[e];
+                if (!settled[target] && heap.insertOrDecrease(target, cost + weights[e]))
+                    predecessors[target] = id;
+            }
+        }
+        throw new NoSuchElementException("Path does not exist.");
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention benchmark for ConcurrentDijkstraGraph. It answers random shortest
+ * path queries on a grid graph from 1, 2, 4, ... up to N reader threads, while
+ * one writer thread keeps changing edge weights, and prints the query
+ * throughput at each thread count along with its speedup over one thread.
+ *
+ * Usage: java ConcurrentDijkstraBenchmark [maxThreads] [secondsPerRun] [writesPerSecond]
+ */
+public class ConcurrentDijkstraBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3;
+        int writesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int side = 60; // a side x side grid of nodes, with edges both ways
+
+        ConcurrentDijkstraGraph<Integer, Double> graph = buildGrid(side, new Random(400));
+        System.out.println("Grid of " + graph.getNodeCount() + " nodes and "
+                + graph.getEdgeCount() + " edges, " + writesPerSecond + " writes/s");
+        // one untimed run first, so that the 1-thread baseline is measured
+        // after the JIT compiler has warmed up
+        run(graph, side, 1, seconds, writesPerSecond);
+
+        // 1, 2, 4, ... while below maxThreads, then maxThreads itself
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2)
+            threadCounts.add(threads);
+        threadCounts.add(Math.max(1, maxThreads));
+
+        System.out.println("threads  queries/s  speedup");
+        double baseline = 0;
+        for (int threads : threadCounts) {
+            double throughput = run(graph, side, threads, seconds, writesPerSecond);
+            if (threads == 1)
+                baseline = throughput;
+            System.out.printf("%7d  %9.0f  %7.2f%n", threads, throughput, throughput / baseline);
+        }
+    }
+
+    /**
+     * Builds a grid graph with random weights, where every node has edges to
+     * and from its horizontal and vertical neighbors.
+     *
+     * @param side the number of nodes along each side of the grid
+     * @param random the source of the edge weights
+     * @return the grid, wrapped for concurrent use
+     */
+    protected static ConcurrentDijkstraGraph<Integer, Double> buildGrid(int side, Random random) {
+        GraphBuilder<Integer> builder = new GraphBuilder<>(side * side, side * side * 4);
+        for (int row = 0; row < side; row++)
+            for (int col = 0; col < side; col++) {
+                int node = row * side + col;
+                if (col + 1 < side) {
+                    builder.addEdge(node, node + 1, 1 + random.nextInt(9));
+                    builder.addEdge(node + 1, node, 1 + random.nextInt(9));
+                }
+                if (row + 1 < side) {
+                    builder.addEdge(node, node + side, 1 + random.nextInt(9));
+                    builder.addEdge(node + side, node, 1 + random.nextInt(9));
+                }
+            }
+        return new ConcurrentDijkstraGraph<>(builder.build());
+    }
+
+    /**
+     * Runs reader threads for a fixed time while one writer changes weights.
+     *
+     * @param graph the shared graph
+     * @param side the number of nodes along each side of the grid
+     * @param threads the number of reader threads
+     * @param seconds how long to run
+     * @param writesPerSecond how often the writer changes an edge weight
+     * @return the number of queries answered per second, over all readers
+     */
+    protected static double run(ConcurrentDijkstraGraph<Integer, Double> graph, int side,
+            int threads, double seconds, int writesPerSecond) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder queries = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        int nodes = side * side;
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            new Thread(() -> {
+                while (running.get()) {
+                    graph.shortestPathCost(random.nextInt(nodes), random.nextInt(nodes));
+                    queries.increment();
+                }
+                done.countDown();
+            }).start();
+        }
+        Thread writer = new Thread(() -> {
+            Random random = new Random(-1);
+            while (running.get()) {
+                int node = random.nextInt(nodes - 1);
+                if ((node + 1) % side != 0)
+                    graph.insertEdge(node, node + 1, 1.0 + random.nextInt(9));
+                try {
+                    Thread.sleep(Math.max(1, 1000 / Math.max(1, writesPerSecond)));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        if (writesPerSecond > 0)
+            writer.start();
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        done.await();
+        writer.join();
+        return queries.sum() / seconds;
+    }
+}
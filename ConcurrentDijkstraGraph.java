@@ -0,0 +1,411 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe wrapper around a DijkstraGraph, optimized for many concurrent
+ * readers and occasional writers. Reads of a single counter or cached field
+ * run under a StampedLock optimistic read, and every other query, including
+ * every search, runs under the read lock; mutations take the write lock. The
+ * indexes a search may consult, such as ALT landmarks and a distance matrix,
+ * are brought up to date by each writer, so readers never rebuild them. Search
+ * state lives in local variables or per-thread workspaces, and the shared
+ * tree cache synchronizes on its own.
+ *
+ * Keeping the indexes current makes writes expensive: with a distance matrix,
+ * every write that changes the graph recomputes the whole matrix, a
+ * Floyd-Warshall or a Dijkstra search from every node, while holding the
+ * write lock and so blocking every reader. Stale landmarks are recomputed the
+ * same way. Apply several changes at once through update, which prepares the
+ * indexes only once for the whole batch.
+ */
+public class ConcurrentDijkstraGraph<NodeType, EdgeType extends Number>
+        implements GraphADT<NodeType, EdgeType> {
+
+    protected final DijkstraGraph<NodeType, EdgeType> graph;
+    protected final StampedLock lock = new StampedLock();
+
+    /**
+     * Creates a new ConcurrentDijkstraGraph around an existing graph. The graph
+     * must not be used directly afterwards, and its map must not change its
+     * structure on reads, as the default OpenAddressingHashtableMap does not.
+     *
+     * @param graph the graph to guard
+     */
+    public ConcurrentDijkstraGraph(DijkstraGraph<NodeType, EdgeType> graph) {
+        this.graph = graph;
+        prepareForReaders();
+    }
+
+    /**
+     * Creates a new, empty ConcurrentDijkstraGraph
+     */
+    public ConcurrentDijkstraGraph() {
+        this(new DijkstraGraph<>());
+    }
+
+    /**
+     * Builds the graph's lazily cached structures while the write lock is held,
+     * so that readers only ever read them: the node list, the CSR snapshot of
+     * a frozen graph, the landmarks of an ALT search, and a distance matrix.
+     * Only the ones the last writes made stale are rebuilt.
+     */
+    protected void prepareForReaders() {
+        graph.getAllNodes();
+        if (graph.isFrozen())
+            graph.snapshot();
+        if (graph.searchMode == DijkstraGraph.SearchMode.ALT) {
+            if (graph.landmarks == null)
+                graph.prepareLandmarks(LandmarkIndex.DEFAULT_COUNT);
+            if (graph.landmarks.isStale())
+                graph.landmarks.refresh();
+        }
+        if (graph.distanceMatrix != null && graph.distanceMatrix.isStale())
+            graph.distanceMatrix.refresh();
+    }
+
+    /**
+     * Applies a batch of changes to the wrapped graph under one write lock, and
+     * then rebuilds the indexes readers use once, instead of after every change.
+     * The changes must be made to the graph passed in, on the calling thread.
+     *
+     * @param changes the mutations to apply
+     */
+    public void update(Consumer<? super DijkstraGraph<NodeType, EdgeType>> changes) {
+        long stamp = lock.writeLock();
+        try {
+            changes.accept(graph);
+        } finally {
+            prepareForReaders();
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a query that only reads a field or two under an optimistic read,
+     * and runs it again under the read lock if a writer interfered.
+     *
+     * @param query the cheap, read-only query to run
+     * @return the result of the query
+     */
+    protected <T> T readOptimistic(Supplier<T> query) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = query.get();
+            if (lock.validate(stamp))
+                return result;
+        }
+        return read(query);
+    }
+
+    /**
+     * Runs a query under the read lock.
+     *
+     * @param query the read-only query to run
+     * @return the result of the query
+     */
+    protected <T> T read(Supplier<T> query) {
+        long stamp = lock.readLock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sets the way the wrapped graph searches, preparing any index that mode
+     * needs before readers use it.
+     *
+     * @param mode the search mode to use
+     */
+    public void setSearchMode(DijkstraGraph.SearchMode mode) {
+        long stamp = lock.writeLock();
+        try {
+            graph.setSearchMode(mode);
+            prepareForReaders();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert a new node into the graph.
+     *
+     * @param data is the data item stored in the new node
+     * @return true if the data is unique and can be inserted into a new node,
+     *         or false if this data is already in the graph
+     * @throws NullPointerException if data is null
+     */
+    public boolean insertNode(NodeType data) {
+        long stamp = lock.writeLock();
+        try {
+            boolean inserted = graph.insertNode(data);
+            prepareForReaders();
+            return inserted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a node from the graph, along with all its adjacent edges.
+     *
+     * @param data is the data item stored in the node to be removed
+     * @return true if a vertex with data is found and removed, or
+     *         false if that data value is not found in the graph
+     * @throws NullPointerException if data is null
+     */
+    public boolean removeNode(NodeType data) {
+        long stamp = lock.writeLock();
+        try {
+            boolean removed = graph.removeNode(data);
+            prepareForReaders();
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert a new directed edge into the graph, or update the weight of an
+     * existing one.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative data item stored in the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
+        long stamp = lock.writeLock();
+        try {
+            boolean inserted = graph.insertEdge(pred, succ, weight);
+            prepareForReaders();
+            return inserted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove an edge from the graph.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge could be removed, or
+     *         false if such an edge is not found in the graph
+     */
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        long stamp = lock.writeLock();
+        try {
+            boolean removed = graph.removeEdge(pred, succ);
+            prepareForReaders();
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Freezes the wrapped graph, so that queries search its CSR snapshot. The
+     * snapshot is recompiled by each writer, never by a reader.
+     */
+    public void freeze() {
+        long stamp = lock.writeLock();
+        try {
+            graph.freeze();
+            prepareForReaders();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check whether the graph contains a node with the provided data.
+     *
+     * @param data the node contents to check for
+     * @return true if data item is stored in a node within the graph, or
+     *         false otherwise
+     */
+    public boolean containsNode(NodeType data) {
+        return read(() -> graph.containsNode(data));
+    }
+
+    /**
+     * Retrieves an unmodifiable list of all node data from this graph.
+     *
+     * @return list of all node data
+     */
+    public List<NodeType> getAllNodes() {
+        return readOptimistic(graph::getAllNodes);
+    }
+
+    /**
+     * Return the number of nodes in the graph.
+     *
+     * @return the number of nodes in the graph
+     */
+    public int getNodeCount() {
+        return readOptimistic(graph::getNodeCount);
+    }
+
+    /**
+     * Check if edge is in the graph.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge is found in the graph, or false other
+     */
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return read(() -> graph.containsEdge(pred, succ));
+    }
+
+    /**
+     * Return the data associated with a specific edge.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the non-negative data from the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public EdgeType getEdge(NodeType pred, NodeType succ) {
+        return read(() -> graph.getEdge(pred, succ));
+    }
+
+    /**
+     * Return the number of edges in the graph.
+     *
+     * @return the number of edges in the graph
+     */
+    public int getEdgeCount() {
+        return readOptimistic(graph::getEdgeCount);
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * start to end.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node cannot be found in the
+     *         graph, or if there is no directed path from start to end
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return read(() -> graph.shortestPathData(start, end));
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node cannot be found in the
+     *         graph, or if there is no directed path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return read(() -> graph.shortestPathCost(start, end));
+    }
+
+    /**
+     * Returns the nodes, edge weights and costs of the shortest path from
+     * start to end, all read under one lock.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the nodes, edge weights and costs of the shortest path
+     * @throws NoSuchElementException if either node cannot be found in the
+     *         graph, or if there is no directed path from start to end
+     */
+    public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+        return read(() -> graph.shortestPath(start, end));
+    }
+
+    /**
+     * Tests that queries on many threads stay correct while another thread
+     * keeps changing an edge weight, in every search mode and with the tree
+     * cache, whose indexes and caches must never be rebuilt by readers
+     */
+    @Test
+    public void testConcurrentQueries() throws InterruptedException {
+        for (int mode = 0; mode < 4; mode++) {
+            DijkstraGraph<String, Integer> inner = new DijkstraGraph<>();
+            if (mode < 3)
+                inner.setSearchMode(DijkstraGraph.SearchMode.values()[mode]);
+            else
+                inner.enableTreeCache(1 << 20);
+            ConcurrentDijkstraGraph<String, Integer> graph = new ConcurrentDijkstraGraph<>(inner);
+            for (String node : new String[] {"A", "B", "C", "D"})
+                graph.insertNode(node);
+            graph.insertEdge("A", "B", 1);
+            graph.insertEdge("B", "D", 1);
+            graph.insertEdge("A", "C", 1);
+            graph.insertEdge("C", "D", 3);
+            boolean[] failed = new boolean[1];
+            Thread[] readers = new Thread[4];
+            for (int t = 0; t < readers.length; t++) {
+                readers[t] = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        double cost = graph.shortestPathCost("A", "D");
+                        List<String> path = graph.shortestPathData("A", "D");
+                        if (cost != 2 && cost != 4 || path.size() != 3 || graph.getNodeCount() != 4)
+                            failed[0] = true;
+                    }
+                });
+                readers[t].start();
+            }
+            for (int i = 0; i < 1000; i++) {
+                graph.insertEdge("B", "D", 3);
+                graph.insertEdge("B", "D", 1);
+            }
+            for (Thread reader : readers)
+                reader.join();
+            Assertions.assertFalse(failed[0]);
+            Assertions.assertEquals(Arrays.asList("A", "B", "D"), graph.shortestPathData("A", "D"));
+            Assertions.assertThrows(NoSuchElementException.class,
+                    () -> graph.shortestPathCost("D", "A"));
+            Assertions.assertTrue(graph.removeNode("B"));
+            Assertions.assertEquals(Arrays.asList("A", "C", "D"), graph.shortestPathData("A", "D"));
+            Assertions.assertEquals(3, graph.getAllNodes().size());
+            if (mode == 2)
+                Assertions.assertFalse(inner.landmarks.isStale()); // refreshed by the writer
+        }
+    }
+
+    /**
+     * Tests that a batch of changes is applied under one lock, after which the
+     * distance matrix is current, and that writes which leave the graph
+     * unchanged do not recompute it
+     */
+    @Test
+    public void testBatchUpdate() {
+        DijkstraGraph<String, Integer> inner = new DijkstraGraph<>();
+        DistanceMatrix<String> matrix = inner.prepareDistanceMatrix(DistanceMatrix.Strategy.AUTO);
+        ConcurrentDijkstraGraph<String, Integer> graph = new ConcurrentDijkstraGraph<>(inner);
+        graph.update(g -> {
+            for (String node : new String[] {"A", "B", "C"})
+                g.insertNode(node);
+            g.insertEdge("A", "B", 2);
+            g.insertEdge("B", "C", 2);
+            g.insertEdge("A", "C", 5);
+        });
+        Assertions.assertFalse(matrix.isStale());
+        Assertions.assertEquals(Double.valueOf(4), Double.valueOf(graph.shortestPathCost("A", "C")));
+        DistanceMatrix.Tables tables = matrix.tables;
+        Assertions.assertFalse(graph.insertNode("A"));
+        graph.setSearchMode(DijkstraGraph.SearchMode.BIDIRECTIONAL);
+        Assertions.assertSame(tables, matrix.tables);
+        graph.update(g -> g.removeEdge("B", "C"));
+        Assertions.assertEquals(Double.valueOf(5), Double.valueOf(graph.shortestPathCost("A", "C")));
+        Assertions.assertNotSame(tables, matrix.tables);
+    }
+}
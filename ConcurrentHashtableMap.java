@@ -0,0 +1,508 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Thread-safe implementation of MapADT. Readers never take a lock: the table
+ * is published through a volatile field and every bucket holds an immutable
+ * chain of entries, so a reader always sees a complete chain. Writers lock one
+ * of a fixed number of stripes and publish a rebuilt chain for their bucket.
+ * A resize locks every stripe, which blocks writers only, builds the larger
+ * table and then publishes it; readers keep using the old table until then.
+ */
+public class ConcurrentHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    /**
+     * Immutable entry of a bucket's chain.
+     */
+    protected static final class Entry<KeyType, ValueType> {
+        public final KeyType key;
+        public final int hash;
+        public final ValueType value;
+        public final Entry<KeyType, ValueType> next;
+
+        /**
+         * Constructs a new Entry in front of the rest of a chain.
+         * @param key the key of the entry
+         * @param hash the spread hash code of key
+         * @param value the value of the entry
+         * @param next the entry that follows this one in its chain
+         */
+        public Entry(KeyType key, int hash, ValueType value, Entry<KeyType, ValueType> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // the table resizes once the number of entries exceeds this fraction of its buckets
+    protected static final double MAX_LOAD_FACTOR = 0.75;
+
+    protected volatile AtomicReferenceArray<Entry<KeyType, ValueType>> table;
+    // the bucket index of a hash modulo stripes.length is its stripe index, since
+    // both lengths are powers of two and the table is never smaller than stripes
+    protected final ReentrantLock[] stripes;
+    protected final AtomicInteger size = new AtomicInteger();
+
+    // incremented after every change to the keys is published, so a snapshot
+    // that records the count read before collecting keys is never newer than it claims
+    protected final AtomicInteger modCount = new AtomicInteger();
+    protected volatile KeySnapshot<KeyType> keySnapshot = null;
+
+    /**
+     * Unmodifiable key list together with the modCount it was built at.
+     */
+    protected static final class KeySnapshot<KeyType> {
+        public final int modCount;
+        public final List<KeyType> keys;
+
+        /**
+         * Constructs a new KeySnapshot.
+         * @param modCount the value of modCount read before collecting keys
+         * @param keys the unmodifiable list of collected keys
+         */
+        public KeySnapshot(int modCount, List<KeyType> keys) {
+            this.modCount = modCount;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Constructor to initialize the table with at least the given capacity and
+     * number of write stripes. Both are rounded up to the next power of two.
+     * @param capacity the minimum initial number of buckets
+     * @param concurrencyLevel the number of writers that may update the table
+     *        at the same time
+     */
+    public ConcurrentHashtableMap(int capacity, int concurrencyLevel) {
+        int stripeCount = 1;
+        while (stripeCount < concurrencyLevel) stripeCount <<= 1;
+        int buckets = stripeCount;
+        while (buckets < capacity) buckets <<= 1;
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new ReentrantLock();
+        table = new AtomicReferenceArray<>(buckets);
+    }
+
+    /**
+     * Constructor to initialize the table with a given capacity and 16 stripes.
+     * @param capacity the minimum initial number of buckets
+     */
+    public ConcurrentHashtableMap(int capacity) {
+        this(capacity, 16);
+    }
+
+    /**
+     * Default constructor to initialize the table with a default capacity of 64.
+     */
+    public ConcurrentHashtableMap() {
+        this(64);
+    }
+
+    /**
+     * Spreads the higher bits of a key's hash code into the lower ones.
+     * @param key the key to hash
+     * @return the spread hash code
+     */
+    protected static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Walks a chain for a key without locking.
+     * @param e the first entry of the chain
+     * @param key the key to look for
+     * @param hash the spread hash code of key
+     * @return the entry holding key, or null if it is not in that chain
+     */
+    protected static <KeyType, ValueType> Entry<KeyType, ValueType> find(
+            Entry<KeyType, ValueType> e, Object key, int hash) {
+        for (; e != null; e = e.next) {
+            if (e.hash == hash && (e.key == key || e.key.equals(key))) return e;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the entry for a key in the currently published table.
+     * @param key the key to look for
+     * @return the entry holding key, or null if it is not stored
+     */
+    protected Entry<KeyType, ValueType> findEntry(Object key) {
+        int hash = hash(key);
+        AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+        return find(tab.get(hash & (tab.length() - 1)), key, hash);
+    }
+
+    /**
+     * Builds a copy of a chain that leaves out one of its entries. The part of
+     * the chain after that entry is shared rather than copied.
+     * @param head the first entry of the chain
+     * @param target the entry to leave out
+     * @param replacement an entry to put in target's place, or null to drop it
+     * @return the first entry of the new chain
+     */
+    protected Entry<KeyType, ValueType> rebuildWithout(Entry<KeyType, ValueType> head,
+            Entry<KeyType, ValueType> target, Entry<KeyType, ValueType> replacement) {
+        if (head == target) return replacement;
+        return new Entry<>(head.key, head.hash, head.value,
+                rebuildWithout(head.next, target, replacement));
+    }
+
+    /**
+     * Inserts a key while holding its stripe, unless it is already stored.
+     * @param key the key of the entry
+     * @param mappingFunction computes the value of the new entry
+     * @param returnAdded whether to return the new entry once it is added
+     * @return the entry that already held key, or else the newly added entry
+     *         when returnAdded is true and null when it is false
+     */
+    private Entry<KeyType, ValueType> insert(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction, boolean returnAdded) {
+        int hash = hash(key);
+        boolean grow;
+        Entry<KeyType, ValueType> added;
+        ReentrantLock lock = stripes[hash & (stripes.length - 1)];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+            int index = hash & (tab.length() - 1);
+            Entry<KeyType, ValueType> head = tab.get(index);
+            Entry<KeyType, ValueType> existing = find(head, key, hash);
+            if (existing != null) return existing;
+            added = new Entry<>(key, hash, mappingFunction.apply(key), head);
+            tab.set(index, added);
+            modCount.incrementAndGet();
+            grow = size.incrementAndGet() > tab.length() * MAX_LOAD_FACTOR;
+        } finally {
+            lock.unlock();
+        }
+        // resize after releasing the stripe, since resize() locks every stripe in order
+        if (grow) resize();
+        return returnAdded ? added : null;
+    }
+
+    /**
+     * Adds a key-value pair to the table.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @throws IllegalArgumentException if the key already exists
+     * @throws NullPointerException if the key is null
+     */
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null) throw new NullPointerException("The key is null");
+        if (insert(key, k -> value, false) != null)
+            throw new IllegalArgumentException("The key already mapped");
+    }
+
+    /**
+     * Adds a key-value pair to the table if the key does not exist yet.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @return the value the key already mapped to, or null if the pair was added
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType putIfAbsent(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Entry<KeyType, ValueType> existing = insert(key, k -> value, false);
+        return existing == null ? null : existing.value;
+    }
+
+    /**
+     * Retrieves the value associated with a given key, adding an entry with the
+     * computed value first if the key does not exist yet. The lookup is tried
+     * without locking first, and mappingFunction runs at most once per key.
+     * @param key the key to retrieve
+     * @param mappingFunction computes the value for a missing key
+     * @return the value associated with the key after this call
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Entry<KeyType, ValueType> entry = findEntry(key);
+        if (entry != null) return entry.value;
+        return insert(key, mappingFunction, true).value;
+    }
+
+    /**
+     * Replaces the value of a key that already exists.
+     * @param key the key of the pair
+     * @param value the new value of the pair
+     * @return the previous value of the key, or null if the key does not exist
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType replace(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        ReentrantLock lock = stripes[hash & (stripes.length - 1)];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+            int index = hash & (tab.length() - 1);
+            Entry<KeyType, ValueType> head = tab.get(index);
+            Entry<KeyType, ValueType> existing = find(head, key, hash);
+            if (existing == null) return null;
+            tab.set(index, rebuildWithout(head, existing,
+                    new Entry<>(existing.key, hash, value, existing.next)));
+            return existing.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resizes the table by doubling its capacity. Every stripe is locked so no
+     * writer changes a chain while it is copied, but readers are not blocked.
+     */
+    protected void resize() {
+        AtomicReferenceArray<Entry<KeyType, ValueType>> oldTable = table;
+        for (ReentrantLock lock : stripes) lock.lock();
+        try {
+            // another writer may have resized the table already
+            if (table != oldTable || size.get() <= oldTable.length() * MAX_LOAD_FACTOR) return;
+            AtomicReferenceArray<Entry<KeyType, ValueType>> newTable =
+                    new AtomicReferenceArray<>(oldTable.length() * 2);
+            int mask = newTable.length() - 1;
+            for (int i = 0; i < oldTable.length(); i++) {
+                for (Entry<KeyType, ValueType> e = oldTable.get(i); e != null; e = e.next) {
+                    int index = e.hash & mask;
+                    newTable.set(index, new Entry<>(e.key, e.hash, e.value, newTable.get(index)));
+                }
+            }
+            table = newTable;
+        } finally {
+            for (ReentrantLock lock : stripes) lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the table contains a given key.
+     * @param key the key to check
+     * @return true if the key exists, false otherwise
+     */
+    public boolean containsKey(KeyType key) {
+        if (key == null) return false;
+        return findEntry(key) != null;
+    }
+
+    /**
+     * Retrieves the value associated with a given key.
+     * @param key the key to retrieve
+     * @return the value associated with the key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        Entry<KeyType, ValueType> entry = key == null ? null : findEntry(key);
+        if (entry == null) throw new NoSuchElementException("The key is not stored");
+        return entry.value;
+    }
+
+    /**
+     * Retrieves the value associated with a given key, or null if the key does
+     * not exist.
+     * @param key the key to retrieve
+     * @return the value associated with the key, or null
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType getOrNull(KeyType key) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Entry<KeyType, ValueType> entry = findEntry(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Removes a key-value pair from the table.
+     * @param key the key to remove
+     * @return the value of the removed key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null) throw new NoSuchElementException("The key is not stored");
+        int hash = hash(key);
+        ReentrantLock lock = stripes[hash & (stripes.length - 1)];
+        lock.lock();
+        try {
+            AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+            int index = hash & (tab.length() - 1);
+            Entry<KeyType, ValueType> head = tab.get(index);
+            Entry<KeyType, ValueType> existing = find(head, key, hash);
+            if (existing == null) throw new NoSuchElementException("The key is not stored");
+            tab.set(index, rebuildWithout(head, existing, existing.next));
+            modCount.incrementAndGet();
+            size.decrementAndGet();
+            return existing.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears all key-value pairs from the table.
+     */
+    public void clear() {
+        for (ReentrantLock lock : stripes) lock.lock();
+        try {
+            table = new AtomicReferenceArray<>(table.length());
+            modCount.incrementAndGet();
+            size.set(0);
+        } finally {
+            for (ReentrantLock lock : stripes) lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of key-value pairs in the table.
+     * @return the number of pairs
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Retrieves the capacity of the table.
+     * @return the number of buckets
+     */
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * Retrieves all keys stored in the currently published table. Keys that
+     * are added or removed while this runs may or may not be included.
+     * @return a LinkedList containing all keys in the table
+     */
+    public LinkedList<KeyType> getKeys() {
+        LinkedList<KeyType> keys = new LinkedList<>();
+        forEachKey(keys::add);
+        return keys;
+    }
+
+    /**
+     * Retrieves an unmodifiable list of all keys, which is reused until a key
+     * is added or removed.
+     * @return an unmodifiable list of the keys in the table
+     */
+    public List<KeyType> getKeySnapshot() {
+        KeySnapshot<KeyType> snapshot = keySnapshot;
+        int currentCount = modCount.get();
+        if (snapshot == null || snapshot.modCount != currentCount) {
+            ArrayList<KeyType> keys = new ArrayList<>(size.get());
+            forEachKey(keys::add);
+            snapshot = new KeySnapshot<>(currentCount, Collections.unmodifiableList(keys));
+            keySnapshot = snapshot;
+        }
+        return snapshot.keys;
+    }
+
+    /**
+     * Retrieves an iterator over the keys of the currently published table.
+     * @return an iterator over the keys in the table
+     */
+    public Iterator<KeyType> keyIterator() {
+        AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+        return new Iterator<KeyType>() {
+            private int index = 0;
+            private Entry<KeyType, ValueType> entry = null;
+
+            @Override
+            public boolean hasNext() {
+                while (entry == null && index < tab.length()) entry = tab.get(index++);
+                return entry != null;
+            }
+
+            @Override
+            public KeyType next() {
+                if (!hasNext()) throw new NoSuchElementException("No more keys");
+                KeyType key = entry.key;
+                entry = entry.next;
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Passes every key in the currently published table to a visitor.
+     * @param visitor the action to perform on each key
+     */
+    public void forEachKey(Consumer<? super KeyType> visitor) {
+        AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+        for (int i = 0; i < tab.length(); i++) {
+            for (Entry<KeyType, ValueType> e = tab.get(i); e != null; e = e.next)
+                visitor.accept(e.key);
+        }
+    }
+
+    /**
+     * Passes every key-value pair in the currently published table to a visitor.
+     * @param visitor the action to perform on each key and its value
+     */
+    public void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> visitor) {
+        AtomicReferenceArray<Entry<KeyType, ValueType>> tab = table;
+        for (int i = 0; i < tab.length(); i++) {
+            for (Entry<KeyType, ValueType> e = tab.get(i); e != null; e = e.next)
+                visitor.accept(e.key, e.value);
+        }
+    }
+
+
+    /**
+     * Tests the basic map operations on a single thread, across resizes.
+     */
+    @Test
+    public void testSingleThreadedOperations() {
+        ConcurrentHashtableMap<Integer, String> map = new ConcurrentHashtableMap<>(4, 2);
+        for (int i = 0; i < 200; i++) map.put(i, "v" + i);
+        assertThrows(IllegalArgumentException.class, () -> map.put(7, "again"));
+        assertEquals(200, map.getSize());
+        assertEquals("v7", map.replace(7, "seven"));
+        assertEquals("seven", map.get(7));
+        assertEquals("v8", map.remove(8));
+        assertNull(map.getOrNull(8));
+        assertEquals("v9", map.computeIfAbsent(9, key -> "nine"));
+        assertNull(map.putIfAbsent(8, "eight"));
+        assertEquals(200, map.getSize());
+    }
+
+    /**
+     * Tests that writers on several threads, while another thread reads,
+     * neither lose entries nor make entries disappear for the reader.
+     */
+    @Test
+    public void testConcurrentWritersAndReader() throws InterruptedException {
+        ConcurrentHashtableMap<Integer, Integer> map = new ConcurrentHashtableMap<>(4);
+        map.put(-1, -1);
+        AtomicInteger misses = new AtomicInteger();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t * 10000;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) map.put(offset + i, i);
+            });
+        }
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 100000; i++)
+                if (!map.containsKey(-1)) misses.incrementAndGet();
+        });
+        reader.start();
+        for (Thread writer : writers) writer.start();
+        for (Thread writer : writers) writer.join();
+        reader.join();
+        assertEquals(0, misses.get());
+        assertEquals(40001, map.getSize());
+        for (int i = 0; i < 40000; i++) assertEquals(i % 10000, map.get(i));
+    }
+}
@@ -0,0 +1,734 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Contraction Hierarchies index for fast point-to-point queries on a graph
+ * that rarely changes. Preprocessing contracts the nodes one by one, in the
+ * order given by their edge difference (shortcuts added minus edges removed)
+ * plus their number of already contracted neighbors, and adds a shortcut
+ * between two neighbors of a contracted node whenever a bounded witness
+ * search finds no other path that is as short. Queries then run a
+ * bidirectional Dijkstra that only ever moves to higher ranked nodes, and
+ * unpack the shortcuts on the path found back into original edges.
+ *
+ * Preprocessing contracts independent sets of nodes in rounds: the node
+ * priorities and the shortcuts of every node in a round are computed in
+ * parallel on the common fork-join pool, and only applying them is
+ * sequential. The finished index is Serializable, so servers can load it
+ * instead of contracting the graph again.
+ */
+public class ContractionHierarchy<NodeType> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // witness searches give up after settling this many nodes, which can only
+    // add shortcuts that were not needed
+    protected static final int WITNESS_SETTLE_LIMIT = 500;
+
+    protected final Object[] nodeData; // data of each node, by id
+    protected final int[] rank; // contraction order of each node, by id
+
+    // edges toward higher ranked nodes, leaving each node
+    protected final int[] upOffsets;
+    protected final int[] upTargets;
+    protected final double[] upWeights;
+    protected final int[] upMiddles; // contracted node a shortcut skips, or -1
+
+    // edges from higher ranked nodes, entering each node
+    protected final int[] downOffsets;
+    protected final int[] downSources;
+    protected final double[] downWeights;
+    protected final int[] downMiddles;
+
+    protected final int shortcutCount;
+    protected transient MapADT<NodeType, Integer> ids; // id of each node's data, rebuilt on load
+
+    // The forward and backward search state queries reuse, one pair per thread
+    protected static final ThreadLocal<SearchWorkspace[]> QUERY_WORKSPACES =
+            ThreadLocal.withInitial(() -> new SearchWorkspace[] {
+                new SearchWorkspace(), new SearchWorkspace()});
+
+    /**
+     * Contracts a graph into a new ContractionHierarchy, using every core.
+     *
+     * @param graph the graph to preprocess; later changes to it are not seen
+     */
+    public ContractionHierarchy(BaseGraph<NodeType, ?> graph) {
+        this(graph, true);
+    }
+
+    /**
+     * Contracts a graph into a new ContractionHierarchy.
+     *
+     * @param graph the graph to preprocess; later changes to it are not seen
+     * @param parallel true to compute priorities and shortcuts on every core
+     */
+    public ContractionHierarchy(BaseGraph<NodeType, ?> graph, boolean parallel) {
+        CompressedGraph<NodeType> snapshot = graph.snapshot();
+        Contractor contractor = new Contractor(snapshot, parallel);
+        contractor.run();
+        nodeData = snapshot.nodeData.clone();
+        rank = contractor.rank;
+        shortcutCount = contractor.shortcutCount;
+
+        int n = nodeData.length;
+        upOffsets = new int[n + 1];
+        downOffsets = new int[n + 1];
+        for (int id = 0; id < n; id++) {
+            upOffsets[id + 1] = upOffsets[id] + contractor.up[id].size;
+            downOffsets[id + 1] = downOffsets[id] + contractor.down[id].size;
+        }
+        upTargets = new int[upOffsets[n]];
+        upWeights = new double[upOffsets[n]];
+        upMiddles = new int[upOffsets[n]];
+        downSources = new int[downOffsets[n]];
+        downWeights = new double[downOffsets[n]];
+        downMiddles = new int[downOffsets[n]];
+        for (int id = 0; id < n; id++) {
+            EdgeSet up = contractor.up[id];
+            System.arraycopy(up.ends, 0, upTargets, upOffsets[id], up.size);
+            System.arraycopy(up.weights, 0, upWeights, upOffsets[id], up.size);
+            System.arraycopy(up.middles, 0, upMiddles, upOffsets[id], up.size);
+            EdgeSet down = contractor.down[id];
+            System.arraycopy(down.ends, 0, downSources, downOffsets[id], down.size);
+            System.arraycopy(down.weights, 0, downWeights, downOffsets[id], down.size);
+            System.arraycopy(down.middles, 0, downMiddles, downOffsets[id], down.size);
+        }
+        ids = indexIds();
+    }
+
+    // maps the data of every node to its id
+    @SuppressWarnings("unchecked")
+    protected MapADT<NodeType, Integer> indexIds() {
+        MapADT<NodeType, Integer> map = new OpenAddressingHashtableMap<>(nodeData.length * 2);
+        for (int id = 0; id < nodeData.length; id++)
+            if (nodeData[id] != null)
+                map.put((NodeType) nodeData[id], id);
+        return map;
+    }
+
+    // rebuilds the transient map of ids after the rest has been loaded
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ids = indexIds();
+    }
+
+    /**
+     * Creates a new ContractionHierarchy of an empty graph
+     */
+    public ContractionHierarchy() {
+        this(new DijkstraGraph<NodeType, Integer>(), false);
+    }
+
+    // Growable set of weighted edges toward distinct ends, used while contracting
+    protected static final class EdgeSet {
+        public int[] ends = new int[4];
+        public double[] weights = new double[4];
+        public int[] middles = new int[4];
+        public int size = 0;
+
+        public int indexOf(int end) {
+            for (int i = 0; i < size; i++)
+                if (ends[i] == end)
+                    return i;
+            return -1;
+        }
+
+        // adds an edge, or lowers the weight of the edge already toward end
+        public void put(int end, double weight, int middle) {
+            int index = indexOf(end);
+            if (index >= 0) {
+                if (weight < weights[index]) {
+                    weights[index] = weight;
+                    middles[index] = middle;
+                }
+                return;
+            }
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                middles = Arrays.copyOf(middles, size * 2);
+            }
+            ends[size] = end;
+            weights[size] = weight;
+            middles[size++] = middle;
+        }
+
+        public void remove(int end) {
+            int index = indexOf(end);
+            if (index < 0)
+                return;
+            size--;
+            ends[index] = ends[size];
+            weights[index] = weights[size];
+            middles[index] = middles[size];
+        }
+
+        public EdgeSet copy() {
+            EdgeSet copy = new EdgeSet();
+            copy.ends = Arrays.copyOf(ends, Math.max(size, 1));
+            copy.weights = Arrays.copyOf(weights, Math.max(size, 1));
+            copy.middles = Arrays.copyOf(middles, Math.max(size, 1));
+            copy.size = size;
+            return copy;
+        }
+    }
+
+    // Contracts every node of a graph, in rounds of independent nodes
+    protected static final class Contractor {
+        protected final int n;
+        protected final boolean parallel;
+        protected final boolean[] present; // whether each id has a node
+        protected final EdgeSet[] out; // remaining edges between uncontracted nodes
+        protected final EdgeSet[] in;
+        protected final boolean[] contracted;
+        protected final boolean[] inBatch; // nodes of the round being contracted
+        protected final int[] deletedNeighbors;
+        protected final double[] priority;
+        protected final int[] rank;
+        protected final EdgeSet[] up; // final edges toward higher ranks
+        protected final EdgeSet[] down; // final edges from higher ranks
+        protected int shortcutCount = 0;
+        protected final ThreadLocal<Workspace> workspaces;
+
+        public Contractor(CompressedGraph<?> graph, boolean parallel) {
+            n = graph.getNodeIdBound();
+            this.parallel = parallel;
+            present = new boolean[n];
+            out = new EdgeSet[n];
+            in = new EdgeSet[n];
+            up = new EdgeSet[n];
+            down = new EdgeSet[n];
+            contracted = new boolean[n];
+            inBatch = new boolean[n];
+            deletedNeighbors = new int[n];
+            priority = new double[n];
+            rank = new int[n];
+            Arrays.fill(rank, -1);
+            for (int id = 0; id < n; id++) {
+                out[id] = new EdgeSet();
+                in[id] = new EdgeSet();
+                present[id] = graph.nodeOf(id) != null;
+            }
+            for (int id = 0; id < n; id++)
+                for (int e = graph.offsets[id]; e < graph.offsets[id + 1]; e++) {
+                    int target = graph.targets[e];
+                    if (target == id)
+                        continue; // a self loop is never on a shortest path
+                    out[id].put(target, graph.weights[e], -1);
+                    in[target].put(id, graph.weights[e], -1);
+                }
+            workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+        }
+
+        // runs an action for every id, on every core when parallel
+        protected void forEach(int[] ids, java.util.function.IntConsumer action) {
+            IntStream stream = IntStream.of(ids);
+            (parallel ? stream.parallel() : stream).forEach(action);
+        }
+
+        public void run() {
+            int remaining = 0;
+            int[] all = new int[n];
+            for (int id = 0; id < n; id++)
+                if (present[id])
+                    all[remaining++] = id;
+            int[] dirty = Arrays.copyOf(all, remaining);
+            int nextRank = 0;
+            while (remaining > 0) {
+                forEach(dirty, id -> priority[id] = computePriority(id));
+
+                // contract the nodes that come before all their neighbors
+                int[] candidates = new int[remaining];
+                int count = 0;
+                for (int id = 0; id < n; id++)
+                    if (present[id] && !contracted[id])
+                        candidates[count++] = id;
+                boolean[] chosen = new boolean[n];
+                forEach(Arrays.copyOf(candidates, count), id -> chosen[id] = isLocalMinimum(id));
+                int[] batch = new int[count];
+                int batchSize = 0;
+                for (int i = 0; i < count; i++)
+                    if (chosen[candidates[i]])
+                        batch[batchSize++] = candidates[i];
+                batch = Arrays.copyOf(batch, batchSize);
+
+                // find every shortcut first, while the graph is unchanged; a
+                // witness may not pass through another node of the round, since
+                // that node is contracted at the same time
+                for (int id : batch)
+                    inBatch[id] = true;
+                List<List<double[]>> shortcuts = new ArrayList<>(Collections.nCopies(n, null));
+                forEach(batch, id -> shortcuts.set(id, findShortcuts(id, false).list));
+
+                boolean[] isDirty = new boolean[n];
+                for (int id : batch) {
+                    rank[id] = nextRank++;
+                    contracted[id] = true;
+                    up[id] = out[id].copy();
+                    down[id] = in[id].copy();
+                    for (int i = 0; i < out[id].size; i++) {
+                        int neighbor = out[id].ends[i];
+                        in[neighbor].remove(id);
+                        deletedNeighbors[neighbor]++;
+                        isDirty[neighbor] = true;
+                    }
+                    for (int i = 0; i < in[id].size; i++) {
+                        int neighbor = in[id].ends[i];
+                        out[neighbor].remove(id);
+                        deletedNeighbors[neighbor]++;
+                        isDirty[neighbor] = true;
+                    }
+                }
+                for (int id : batch)
+                    for (double[] shortcut : shortcuts.get(id)) {
+                        int from = (int) shortcut[0];
+                        int to = (int) shortcut[1];
+                        out[from].put(to, shortcut[2], id);
+                        in[to].put(from, shortcut[2], id);
+                        shortcutCount++;
+                    }
+                for (int id : batch)
+                    inBatch[id] = false;
+                remaining -= batchSize;
+                int dirtyCount = 0;
+                dirty = new int[n];
+                for (int id = 0; id < n; id++)
+                    if (isDirty[id] && !contracted[id])
+                        dirty[dirtyCount++] = id;
+                dirty = Arrays.copyOf(dirty, dirtyCount);
+            }
+            for (int id = 0; id < n; id++)
+                if (!present[id]) {
+                    up[id] = new EdgeSet();
+                    down[id] = new EdgeSet();
+                }
+        }
+
+        // edge difference plus contracted neighbors; lower is contracted first
+        protected double computePriority(int id) {
+            int shortcuts = findShortcuts(id, true).count;
+            return shortcuts - (in[id].size + out[id].size) + deletedNeighbors[id];
+        }
+
+        // whether a node's priority is below that of every remaining neighbor
+        protected boolean isLocalMinimum(int id) {
+            return beatsAll(id, out[id]) && beatsAll(id, in[id]);
+        }
+
+        protected boolean beatsAll(int id, EdgeSet neighbors) {
+            for (int i = 0; i < neighbors.size; i++) {
+                int other = neighbors.ends[i];
+                if (priority[other] < priority[id]
+                        || priority[other] == priority[id] && other < id)
+                    return false;
+            }
+            return true;
+        }
+
+        // finds the shortcuts contracting a node needs, or only counts them
+        protected Shortcuts findShortcuts(int id, boolean countOnly) {
+            Shortcuts shortcuts = new Shortcuts(countOnly);
+            EdgeSet ins = in[id];
+            EdgeSet outs = out[id];
+            if (ins.size == 0 || outs.size == 0)
+                return shortcuts;
+            double maxOut = 0;
+            for (int j = 0; j < outs.size; j++)
+                maxOut = Math.max(maxOut, outs.weights[j]);
+            Workspace workspace = workspaces.get();
+            for (int i = 0; i < ins.size; i++) {
+                int from = ins.ends[i];
+                double viaCost = ins.weights[i];
+                workspace.search(this, from, id, viaCost + maxOut);
+                for (int j = 0; j < outs.size; j++) {
+                    int to = outs.ends[j];
+                    if (to == from)
+                        continue;
+                    double cost = viaCost + outs.weights[j];
+                    if (workspace.costOf(to) > cost)
+                        shortcuts.add(from, to, cost);
+                }
+                workspace.reset();
+            }
+            return shortcuts;
+        }
+    }
+
+    // The shortcuts found for one node, or just their number
+    protected static final class Shortcuts {
+        public final List<double[]> list;
+        public int count = 0;
+
+        public Shortcuts(boolean countOnly) {
+            list = countOnly ? null : new ArrayList<>();
+        }
+
+        public void add(int from, int to, double cost) {
+            count++;
+            if (list != null)
+                list.add(new double[] {from, to, cost});
+        }
+    }
+
+    // Per-thread state of bounded witness searches, reset in time proportional
+    // to the number of nodes the last search touched
+    protected static final class Workspace {
+        protected final double[] costs;
+        protected final int[] touched;
+        protected int touchedCount = 0;
+        protected final IndexedMinHeap heap;
+
+        public Workspace(int n) {
+            costs = new double[n];
+            Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            touched = new int[n];
+            heap = new IndexedMinHeap(n);
+        }
+
+        public double costOf(int id) {
+            return costs[id];
+        }
+
+        // searches from a node over uncontracted nodes except one and the rest
+        // of the round being contracted, up to a cost
+        public void search(Contractor graph, int from, int excluded, double maxCost) {
+            costs[from] = 0;
+            touched[touchedCount++] = from;
+            heap.insertOrDecrease(from, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT) {
+                int id = heap.peek();
+                double cost = heap.keyOf(id);
+                if (cost > maxCost)
+                    break;
+                heap.poll();
+                EdgeSet outs = graph.out[id];
+                for (int i = 0; i < outs.size; i++) {
+                    int next = outs.ends[i];
+                    double nextCost = cost + outs.weights[i];
+                    if (next == excluded || graph.inBatch[next] || nextCost >= costs[next])
+                        continue;
+                    if (costs[next] == Double.POSITIVE_INFINITY)
+                        touched[touchedCount++] = next;
+                    costs[next] = nextCost;
+                    heap.insertOrDecrease(next, nextCost);
+                }
+            }
+        }
+
+        public void reset() {
+            for (int i = 0; i < touchedCount; i++)
+                costs[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            heap.clear();
+        }
+    }
+
+    /**
+     * Return the number of shortcuts preprocessing added.
+     *
+     * @return the number of shortcut edges
+     */
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Retrieves the id of the node that stores some data.
+     *
+     * @param data the node contents to look up
+     * @return the id of that node, or -1 if it is not in the hierarchy
+     */
+    public int idOf(NodeType data) {
+        Integer id = data == null ? null : ids.getOrNull(data);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * start to end, with every shortcut unpacked into original edges.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     */
+    @SuppressWarnings("unchecked")
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        Query query = new Query(idOf(start), idOf(end));
+        LinkedList<NodeType> path = new LinkedList<>();
+        // the forward half, from the meeting node back to start
+        for (int id = query.meeting; query.forward.predecessorOf(id) >= 0;
+                id = upSourceOf(query.forward.predecessorOf(id))) {
+            int edge = query.forward.predecessorOf(id);
+            unpack(upSourceOf(edge), id, upMiddles[edge], path, true);
+        }
+        path.addFirst((NodeType) nodeData[query.start]);
+        // the backward half, from the meeting node on to end
+        for (int id = query.meeting; query.backward.predecessorOf(id) >= 0;
+                id = downTargetOf(query.backward.predecessorOf(id))) {
+            int edge = query.backward.predecessorOf(id);
+            unpack(id, downTargetOf(edge), downMiddles[edge], path, false);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return new Query(idOf(start), idOf(end)).cost;
+    }
+
+    // the node an up edge leaves, found by binary search over the offsets
+    protected int upSourceOf(int edge) {
+        return sourceOf(upOffsets, edge);
+    }
+
+    // the node a down edge enters, found by binary search over the offsets
+    protected int downTargetOf(int edge) {
+        return sourceOf(downOffsets, edge);
+    }
+
+    private static int sourceOf(int[] offsets, int edge) {
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= edge)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Adds the nodes of the edge from one node to another to a path, after
+     * replacing every shortcut with the two edges it skips. The from node
+     * itself is not added.
+     *
+     * @param from the node the edge leaves
+     * @param to the node the edge enters
+     * @param middle the node the edge skips, or -1 for an original edge
+     * @param path the path to add the nodes to
+     * @param atFront true to add them at the front of the path, whose first
+     *        node is to, or false to add them at the end, whose last node is from
+     */
+    @SuppressWarnings("unchecked")
+    protected void unpack(int from, int to, int middle, LinkedList<NodeType> path,
+            boolean atFront) {
+        List<NodeType> nodes = new ArrayList<>();
+        // an explicit stack of edges still to unpack, first edge on top
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = from;
+        stack[size++] = to;
+        stack[size++] = middle;
+        while (size > 0) {
+            int skipped = stack[--size];
+            int b = stack[--size];
+            int a = stack[--size];
+            if (skipped < 0) {
+                nodes.add((NodeType) nodeData[b]);
+                continue;
+            }
+            if (size + 6 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            // the skipped node ranks below both ends: a reaches it by a down
+            // edge, and it reaches b by an up edge; push the second half first
+            stack[size++] = skipped;
+            stack[size++] = b;
+            stack[size++] = upMiddles[findUp(skipped, b)];
+            stack[size++] = a;
+            stack[size++] = skipped;
+            stack[size++] = downMiddles[findDown(skipped, a)];
+        }
+        if (atFront)
+            path.addAll(0, nodes);
+        else
+            path.addAll(nodes);
+    }
+
+    // the index of the up edge from one node to another
+    protected int findUp(int from, int to) {
+        for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++)
+            if (upTargets[e] == to)
+                return e;
+        throw new IllegalStateException("Missing edge from " + from + " to " + to);
+    }
+
+    // the index of the down edge into one node from another
+    protected int findDown(int to, int from) {
+        for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++)
+            if (downSources[e] == from)
+                return e;
+        throw new IllegalStateException("Missing edge from " + from + " to " + to);
+    }
+
+    // One bidirectional upward search, and the best path it found. Its state
+    // lives in the workspaces of the calling thread, so it costs time in
+    // proportion to the nodes it reaches, and is only valid until the next query
+    protected final class Query {
+        public final int start;
+        public final int meeting;
+        public final double cost;
+        public final SearchWorkspace forward; // predecessor is the up edge each node was reached by
+        public final SearchWorkspace backward; // predecessor is the down edge
+
+        public Query(int start, int end) {
+            if (start < 0 || end < 0)
+                throw new NoSuchElementException("Start or end node not found.");
+            this.start = start;
+            SearchWorkspace[] workspaces = QUERY_WORKSPACES.get();
+            forward = workspaces[0];
+            backward = workspaces[1];
+            forward.begin(nodeData.length, 4);
+            backward.begin(nodeData.length, 4);
+            forward.reach(start, 0, -1);
+            backward.reach(end, 0, -1);
+            double best = Double.POSITIVE_INFINITY;
+            int bestNode = -1;
+
+            while (true) {
+                double forwardNext = forward.heap.isEmpty() ? Double.POSITIVE_INFINITY
+                        : forward.heap.keyOf(forward.heap.peek());
+                double backwardNext = backward.heap.isEmpty() ? Double.POSITIVE_INFINITY
+                        : backward.heap.keyOf(backward.heap.peek());
+                // each side stops once it cannot improve the best path
+                if (Math.min(forwardNext, backwardNext) >= best)
+                    break;
+                if (forwardNext <= backwardNext) {
+                    int id = forward.settleNext();
+                    if (forwardNext + backward.costOf(id) < best) {
+                        best = forwardNext + backward.costOf(id);
+                        bestNode = id;
+                    }
+                    for (int e = upOffsets[id]; e < upOffsets[id + 1]; e++)
+                        forward.reach(upTargets[e], forwardNext + upWeights[e], e);
+                } else {
+                    int id = backward.settleNext();
+                    if (backwardNext + forward.costOf(id) < best) {
+                        best = backwardNext + forward.costOf(id);
+                        bestNode = id;
+                    }
+                    for (int e = downOffsets[id]; e < downOffsets[id + 1]; e++)
+                        backward.reach(downSources[e], backwardNext + downWeights[e], e);
+                }
+            }
+            if (bestNode < 0)
+                throw new NoSuchElementException("Path does not exist.");
+            meeting = bestNode;
+            cost = best;
+        }
+    }
+
+    /**
+     * Writes this hierarchy to a stream, so that it can be loaded later
+     * without contracting the graph again. Node data must be Serializable.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the hierarchy could not be written
+     */
+    public void save(OutputStream out) throws IOException {
+        ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeObject(this);
+        objects.flush();
+    }
+
+    /**
+     * Reads a hierarchy written by save.
+     *
+     * @param in the stream to read from
+     * @return the hierarchy that was saved
+     * @throws IOException if the stream does not hold a saved hierarchy
+     */
+    @SuppressWarnings("unchecked")
+    public static <NodeType> ContractionHierarchy<NodeType> load(InputStream in)
+            throws IOException {
+        try {
+            return (ContractionHierarchy<NodeType>) new ObjectInputStream(in).readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Stream does not hold a ContractionHierarchy.", e);
+        }
+    }
+
+    /**
+     * Tests that hierarchy queries, including unpacked paths, match plain
+     * Dijkstra, both for a freshly built and for a saved and loaded hierarchy,
+     * on a graph with self loops and edges of weight zero
+     */
+    @Test
+    public void testQueriesMatchDijkstra() throws IOException {
+        Random random = new Random(20);
+        DijkstraGraph<Integer, Integer> graph = DijkstraGraph.randomGraph(random, 150, 600, 25);
+        for (int i = 0; i < 10; i++) {
+            graph.insertEdge(i, i, 1); // contraction skips self loops
+            graph.insertEdge(random.nextInt(150), random.nextInt(150), 0);
+        }
+        ContractionHierarchy<Integer> hierarchy = new ContractionHierarchy<>(graph);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hierarchy.save(bytes);
+        ContractionHierarchy<Integer> loaded =
+                ContractionHierarchy.load(new ByteArrayInputStream(bytes.toByteArray()));
+        Assertions.assertEquals(hierarchy.getShortcutCount(), loaded.getShortcutCount());
+
+        for (ContractionHierarchy<Integer> index : List.of(hierarchy, loaded))
+            DijkstraGraph.assertMatchesReference(graph, random, 150, 50,
+                    index::shortestPathCost, index::shortestPathData);
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> hierarchy.shortestPathData(0, 999));
+        // every query on this thread reused the same search state
+        SearchWorkspace[] workspaces = QUERY_WORKSPACES.get();
+        hierarchy.shortestPathCost(0, 0);
+        Assertions.assertSame(workspaces, QUERY_WORKSPACES.get());
+        Assertions.assertTrue(workspaces[0].generation > 50);
+    }
+
+    /**
+     * Tests that two nodes contracted in the same round cannot each serve as
+     * the witness of the other, on a diamond of equal-cost paths
+     */
+    @Test
+    public void testEqualCostDiamond() {
+        for (boolean parallel : new boolean[] {false, true}) {
+            DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+            // u and v get the lowest ids, so that they win their priority ties
+            // and are contracted in the same round
+            for (String node : new String[] {"u", "v", "a", "b"})
+                graph.insertNode(node);
+            graph.insertEdge("a", "u", 1);
+            graph.insertEdge("u", "b", 1);
+            graph.insertEdge("a", "v", 1);
+            graph.insertEdge("v", "b", 1);
+            ContractionHierarchy<String> hierarchy = new ContractionHierarchy<>(graph, parallel);
+            Assertions.assertEquals(2.0, hierarchy.shortestPathCost("a", "b"));
+            Assertions.assertEquals(3, hierarchy.shortestPathData("a", "b").size());
+        }
+    }
+}
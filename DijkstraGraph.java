@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
 import java.util.*;
+import java.util.function.BiFunction;
 
 /**
  * This class implements Dijkstra's shortest path algorithm by extending BaseGraph.
@@ -56,11 +57,256 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
     }
 
+    // When set, searches run over the graph's CSR snapshot instead of its nodes
+    protected boolean searchSnapshot = false;
+
     /**
-     * Creates a new DijkstraGraph with a PlaceholderMap as its underlying storage
+     * The priority queues computeShortestPath can use. PRIORITY_QUEUE queues a
+     * new SearchNode on every relaxation, and skips stale ones as they come
+     * out; INDEXED_HEAP keeps each node in an IndexedMinHeap at most once, and
+     * lowers its cost in place.
+     */
+    public enum QueueStrategy {
+        PRIORITY_QUEUE,
+        INDEXED_HEAP
+    }
+
+    protected QueueStrategy queueStrategy = QueueStrategy.INDEXED_HEAP;
+    protected int heapArity = 4; // children per node of the INDEXED_HEAP
+
+    /**
+     * The ways computeShortestPath can search. FORWARD searches from the start
+     * over leaving edges until the end is settled; BIDIRECTIONAL alternates
+     * that with a search from the end over entering edges, and stops once the
+     * two searches meet on a path no later settled node can improve; ALT runs
+     * A* toward the end, with lower bounds from a LandmarkIndex.
+     */
+    public enum SearchMode {
+        FORWARD,
+        BIDIRECTIONAL,
+        ALT
+    }
+
+    protected SearchMode searchMode = SearchMode.FORWARD;
+    protected LandmarkIndex<NodeType, EdgeType> landmarks = null; // built for ALT searches
+
+    // Shortest-path trees by source, least recently used first, or null when
+    // trees are not cached; every access synchronizes on the map itself
+    protected LinkedHashMap<NodeType, ShortestPathTree<NodeType>> treeCache = null;
+    protected long treeCacheLimit = 0; // bytes the cached trees may hold
+    protected long treeCacheBytes = 0; // bytes the cached trees hold
+    protected long treeCacheVersion = 0; // modification count the cached trees describe
+    protected DistanceMatrix<NodeType> distanceMatrix = null; // answers every query, if set
+
+    // The search state INDEXED_HEAP searches reuse, one per thread
+    protected static final ThreadLocal<SearchWorkspace> WORKSPACES =
+            ThreadLocal.withInitial(SearchWorkspace::new);
+
+    /**
+     * Creates a new DijkstraGraph with an OpenAddressingHashtableMap as its
+     * underlying storage
      */
     public DijkstraGraph() {
-        super(new HashtableMap<NodeType, BaseGraph<NodeType, EdgeType>.Node>());
+        super(new OpenAddressingHashtableMap<NodeType, BaseGraph<NodeType, EdgeType>.Node>());
+    }
+
+    /**
+     * Creates a new DijkstraGraph that stores its nodes in the provided map
+     *
+     * @param map the map the graph uses to map a data object to the node object
+     *        it is stored in
+     */
+    public DijkstraGraph(MapADT<NodeType, BaseGraph<NodeType, EdgeType>.Node> map) {
+        super(map);
+    }
+
+    /**
+     * Creates a new DijkstraGraph that stores its nodes in the provided map,
+     * and optionally keeps each node's edges in insertion order across removals
+     *
+     * @param map the map the graph uses to map a data object to the node object
+     *        it is stored in
+     * @param stableEdgeOrder true to keep each node's edges in insertion order
+     */
+    public DijkstraGraph(MapADT<NodeType, BaseGraph<NodeType, EdgeType>.Node> map,
+            boolean stableEdgeOrder) {
+        super(map, stableEdgeOrder);
+    }
+
+    /**
+     * Compiles this graph into a CSR snapshot, and runs all later searches
+     * over the snapshot. The graph can still be changed while frozen; the
+     * next search after a change then recompiles the snapshot first.
+     */
+    public void freeze() {
+        snapshot();
+        searchSnapshot = true;
+    }
+
+    /**
+     * Runs all later searches over the graph's nodes again, as before freeze.
+     */
+    public void thaw() {
+        searchSnapshot = false;
+    }
+
+    /**
+     * Checks whether searches currently run over the graph's CSR snapshot.
+     *
+     * @return true if this graph is frozen
+     */
+    public boolean isFrozen() {
+        return searchSnapshot;
+    }
+
+    /**
+     * Selects the priority queue that later searches use.
+     *
+     * @param strategy the queue to use
+     */
+    public void setQueueStrategy(QueueStrategy strategy) {
+        this.queueStrategy = strategy;
+    }
+
+    /**
+     * Selects how later searches explore the graph. Searches over the CSR
+     * snapshot of a frozen graph always run forward.
+     *
+     * @param mode the search mode to use
+     */
+    public void setSearchMode(SearchMode mode) {
+        this.searchMode = mode;
+    }
+
+    /**
+     * Builds the landmark index that ALT searches use, with a number of
+     * landmarks chosen by farthest-point selection. The index registers as a
+     * listener of this graph, and recomputes itself before the next ALT search
+     * after any mutation that could make a path shorter.
+     *
+     * @param count the number of landmarks, at least 1
+     * @return the new landmark index
+     */
+    public LandmarkIndex<NodeType, EdgeType> prepareLandmarks(int count) {
+        if (landmarks != null)
+            removeGraphListener(landmarks);
+        landmarks = new LandmarkIndex<>(this, count);
+        addGraphListener(landmarks);
+        return landmarks;
+    }
+
+    /**
+     * Sets the number of children of each node of the INDEXED_HEAP queue.
+     *
+     * @param arity the number of children, at least 2
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public void setHeapArity(int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("Heap arity must be at least 2.");
+        this.heapArity = arity;
+    }
+
+    /**
+     * Precomputes the costs and next hops between every pair of nodes, so that
+     * shortestPathCost becomes a single lookup and shortestPathData one lookup
+     * per node on the path. The matrix is recomputed on the first query after
+     * a mutation.
+     *
+     * @param strategy the way to compute the matrix
+     * @return the new distance matrix
+     */
+    public DistanceMatrix<NodeType> prepareDistanceMatrix(DistanceMatrix.Strategy strategy) {
+        distanceMatrix = new DistanceMatrix<>(this, strategy);
+        return distanceMatrix;
+    }
+
+    /**
+     * Stops answering queries from a distance matrix.
+     */
+    public void dropDistanceMatrix() {
+        distanceMatrix = null;
+    }
+
+    /**
+     * Caches the shortest-path tree of every source searched from, so that
+     * later paths and costs from the same source need no search. The least
+     * recently used trees are dropped once the cached trees would hold more
+     * than a number of bytes, and every tree is dropped when the graph changes.
+     *
+     * @param maxBytes the most bytes the cached trees may hold together
+     * @throws IllegalArgumentException if maxBytes is not positive
+     */
+    public void enableTreeCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Tree cache limit must be positive.");
+        treeCache = new LinkedHashMap<>(16, 0.75f, true);
+        treeCacheLimit = maxBytes;
+        treeCacheBytes = 0;
+        treeCacheVersion = modCount;
+    }
+
+    /**
+     * Stops caching shortest-path trees, and drops any that are cached.
+     */
+    public void disableTreeCache() {
+        treeCache = null;
+    }
+
+    /**
+     * Computes the shortest paths from one node to every node it can reach.
+     *
+     * @param start the data item in the source node
+     * @return the shortest-path tree rooted at start
+     * @throws NoSuchElementException if start is not in the graph
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType start) {
+        Node startNode = start == null ? null : nodes.getOrNull(start);
+        if (startNode == null)
+            throw new NoSuchElementException("Start node not found.");
+        long version = modCount;
+        int bound = getNodeIdBound();
+        double[] costs = new double[bound];
+        int[] predecessors = new int[bound];
+        searchAll(startNode.id, true, costs, predecessors);
+        return new ShortestPathTree<>(this, version, startNode.id, costs, predecessors);
+    }
+
+    /**
+     * Retrieves the cached shortest-path tree of a source, computing and
+     * caching it if no current tree is cached.
+     *
+     * @param start the data item in the source node
+     * @return a current shortest-path tree rooted at start
+     * @throws NoSuchElementException if start is not in the graph
+     */
+    protected ShortestPathTree<NodeType> cachedTree(NodeType start) {
+        LinkedHashMap<NodeType, ShortestPathTree<NodeType>> cache = treeCache;
+        synchronized (cache) {
+            if (treeCacheVersion != modCount) {
+                cache.clear();
+                treeCacheBytes = 0;
+                treeCacheVersion = modCount;
+            }
+            ShortestPathTree<NodeType> tree = start == null ? null : cache.get(start);
+            if (tree != null && tree.isCurrent())
+                return tree;
+        }
+        ShortestPathTree<NodeType> tree = shortestPathTree(start);
+        synchronized (cache) {
+            if (tree.version != treeCacheVersion || tree.getMemoryBytes() > treeCacheLimit)
+                return tree;
+            ShortestPathTree<NodeType> replaced = cache.put(start, tree);
+            if (replaced != null)
+                treeCacheBytes -= replaced.getMemoryBytes();
+            treeCacheBytes += tree.getMemoryBytes();
+            Iterator<ShortestPathTree<NodeType>> eldest = cache.values().iterator();
+            while (treeCacheBytes > treeCacheLimit) {
+                treeCacheBytes -= eldest.next().getMemoryBytes();
+                eldest.remove();
+            }
+        }
+        return tree;
     }
 
     /**
@@ -73,38 +319,57 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      */
     protected SearchNode computeShortestPath(NodeType start, NodeType end) {
         // Verify both nodes exist in the graph
-        if (!nodes.containsKey(start) || !nodes.containsKey(end)) {
+        Node startNode = start == null ? null : nodes.getOrNull(start);
+        Node endNode = end == null ? null : nodes.getOrNull(end);
+        if (startNode == null || endNode == null) {
             throw new NoSuchElementException("Start or end node not found.");
         }
+        if (searchMode == SearchMode.BIDIRECTIONAL)
+            return searchBidirectional(startNode, endNode);
+        if (searchMode == SearchMode.ALT)
+            return searchWithLandmarks(startNode, endNode);
+        if (queueStrategy == QueueStrategy.PRIORITY_QUEUE)
+            return searchWithPriorityQueue(startNode, endNode);
+        return searchWithIndexedHeap(startNode, endNode);
+    }
 
-        // Initialize data structures for Dijkstra's algorithm
+    /**
+     * Runs Dijkstra's algorithm with a PriorityQueue of SearchNodes, queueing a
+     * new SearchNode on every relaxation
+     *
+     * @param startNode the starting node
+     * @param endNode the destination node
+     * @return SearchNode containing the end node and its shortest path information
+     * @throws NoSuchElementException if no path exists
+     */
+    protected SearchNode searchWithPriorityQueue(Node startNode, Node endNode) {
+        // Initialize data structures for Dijkstra's algorithm, with whether
+        // each graph node is settled indexed by its dense id
         PriorityQueue<SearchNode> pq = new PriorityQueue<>();
-        HashMap<NodeType, SearchNode> visited = new HashMap<>();
+        boolean[] visited = new boolean[getNodeIdBound()];
 
         // Create and add start node to priority queue
-        SearchNode startNode = new SearchNode(nodes.get(start), 0, null);
-        pq.add(startNode);
+        pq.add(new SearchNode(startNode, 0, null));
 
         // Main Dijkstra's algorithm loop
         while (!pq.isEmpty()) {
             SearchNode current = pq.poll();
 
             // Skip if node already visited
-            if (visited.containsKey(current.node.data)) {
+            if (visited[current.node.id]) {
                 continue;
             }
-            visited.put(current.node.data, current);
+            visited[current.node.id] = true;
 
             // Return if end node is reached
-            if (current.node.data.equals(end)) {
+            if (current.node == endNode) {
                 return current;
             }
 
             // Explore all neighboring nodes
             for (Edge edge : current.node.edgesLeaving) {
-                NodeType successorData = edge.successor.data;
-                if (!visited.containsKey(successorData)) {
-                    double newCost = current.cost + edge.data.doubleValue();
+                if (!visited[edge.successor.id]) {
+                    double newCost = current.cost + edge.weight();
                     pq.add(new SearchNode(edge.successor, newCost, current));
                 }
             }
@@ -114,6 +379,275 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         throw new NoSuchElementException("Path does not exist.");
     }
 
+    /**
+     * Runs Dijkstra's algorithm with an IndexedMinHeap over node ids, lowering
+     * the cost of queued nodes in place. SearchNodes are only created for the
+     * nodes along the path that is found.
+     *
+     * @param startNode the starting node
+     * @param endNode the destination node
+     * @return SearchNode containing the end node and its shortest path information
+     * @throws NoSuchElementException if no path exists
+     */
+    protected SearchNode searchWithIndexedHeap(Node startNode, Node endNode) {
+        SearchWorkspace workspace = WORKSPACES.get();
+        searchInto(startNode, endNode, workspace);
+        return pathTo(endNode.id, workspace.predecessors, workspace.costs);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from startNode until endNode is settled, in a
+     * workspace that is reused between searches, so that no objects are
+     * allocated once its arrays fit this graph. The path is left in the
+     * workspace's predecessors.
+     *
+     * @param startNode the starting node
+     * @param endNode the destination node
+     * @param workspace the workspace of the calling thread
+     * @throws NoSuchElementException if no path exists
+     */
+    protected void searchInto(Node startNode, Node endNode, SearchWorkspace workspace) {
+        workspace.begin(getNodeIdBound(), heapArity);
+        workspace.reach(startNode.id, 0, -1);
+        for (int id = workspace.settleNext(); id >= 0; id = workspace.settleNext()) {
+            if (id == endNode.id)
+                return;
+            double cost = workspace.costs[id];
+            EdgeList edges = nodeIndex.nodeOf(id).edgesLeaving;
+            // indexed rather than iterated, so that no iterator is allocated
+            for (int i = 0; i < edges.size(); i++) {
+                Edge edge = edges.get(i);
+                int next = edge.successor.id;
+                if (!workspace.isSettled(next))
+                    workspace.reach(next, cost + edge.weight(), id);
+            }
+        }
+
+        // No path found
+        throw new NoSuchElementException("Path does not exist.");
+    }
+
+    /**
+     * Finds the shortest path from start to end with a forward search in the
+     * calling thread's reusable workspace, and writes its nodes into a list
+     * that the caller can also reuse. Apart from any growth of out, this
+     * allocates nothing once the workspace fits this graph. It always
+     * searches the nodes directly, whatever mode or caches are set.
+     *
+     * @param start the starting node
+     * @param end the destination node
+     * @param out cleared, then filled with the nodes of the path in order
+     * @return the total cost of the shortest path
+     * @throws NoSuchElementException if either node is not found, or no path exists
+     */
+    public double shortestPathInto(NodeType start, NodeType end, List<NodeType> out) {
+        Node startNode = start == null ? null : nodes.getOrNull(start);
+        Node endNode = end == null ? null : nodes.getOrNull(end);
+        if (startNode == null || endNode == null)
+            throw new NoSuchElementException("Start or end node not found.");
+        SearchWorkspace workspace = WORKSPACES.get();
+        searchInto(startNode, endNode, workspace);
+        out.clear();
+        for (int id = endNode.id; id >= 0; id = workspace.predecessorOf(id))
+            out.add(nodeIndex.nodeOf(id).data);
+        Collections.reverse(out);
+        return workspace.costOf(endNode.id);
+    }
+
+    /**
+     * Runs A* from startNode toward endNode, ordering the heap by the cost so
+     * far plus the landmark lower bound on the remaining cost. Landmarks are
+     * prepared with a default count first if prepareLandmarks was never called.
+     *
+     * @param startNode the starting node
+     * @param endNode the destination node
+     * @return SearchNode containing the end node and its shortest path information
+     * @throws NoSuchElementException if no path exists
+     */
+    protected SearchNode searchWithLandmarks(Node startNode, Node endNode) {
+        if (landmarks == null)
+            prepareLandmarks(LandmarkIndex.DEFAULT_COUNT);
+        landmarks.refresh();
+        int bound = getNodeIdBound();
+        int end = endNode.id;
+        IndexedMinHeap heap = new IndexedMinHeap(bound, heapArity);
+        int[] predecessors = new int[bound];
+        double[] costs = new double[bound];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[bound];
+        costs[startNode.id] = 0;
+        predecessors[startNode.id] = -1;
+        heap.insertOrDecrease(startNode.id, landmarks.lowerBound(startNode.id, end));
+
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            settled[id] = true;
+            if (id == end)
+                return pathTo(id, predecessors, costs);
+            for (Edge edge : nodeIndex.nodeOf(id).edgesLeaving) {
+                int next = edge.successor.id;
+                double cost = costs[id] + edge.weight();
+                if (settled[next] || cost >= costs[next])
+                    continue;
+                double remaining = landmarks.lowerBound(next, end);
+                if (remaining == Double.POSITIVE_INFINITY)
+                    continue; // the end cannot be reached from next
+                costs[next] = cost;
+                predecessors[next] = id;
+                heap.insertOrDecrease(next, cost + remaining);
+            }
+        }
+
+        // No path found
+        throw new NoSuchElementException("Path does not exist.");
+    }
+
+    /**
+     * Rebuilds a path found by an id-based search as a chain of SearchNodes.
+     *
+     * @param end the id of the last node of the path
+     * @param predecessors the predecessor id of every node on the path, with -1
+     *        for its first node
+     * @param costs the cost of reaching every node on the path
+     * @return SearchNode for end, linked through its predecessors to the start
+     */
+    protected SearchNode pathTo(int end, int[] predecessors, double[] costs) {
+        int length = 0;
+        for (int step = end; step >= 0; step = predecessors[step])
+            length++;
+        int[] path = new int[length];
+        for (int step = end, i = length - 1; step >= 0; step = predecessors[step], i--)
+            path[i] = step;
+        SearchNode current = null;
+        for (int step : path)
+            current = new SearchNode(nodeIndex.nodeOf(step), costs[step], current);
+        return current;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from one node to every node it can reach, over
+     * leaving edges, or over entering edges to find the costs of reaching the
+     * source from every node instead.
+     *
+     * @param source the id of the node to search from
+     * @param forward true to follow leaving edges, false to follow entering edges
+     * @param costs receives the cost between source and every node, or positive
+     *        infinity for nodes that are not connected; at least getNodeIdBound() long
+     * @param predecessors if not null, receives the id of the node before each
+     *        reached node on its path, or -1 for the source
+     */
+    protected void searchAll(int source, boolean forward, double[] costs, int[] predecessors) {
+        int bound = getNodeIdBound();
+        IndexedMinHeap heap = new IndexedMinHeap(bound, heapArity);
+        boolean[] settled = new boolean[bound];
+        Arrays.fill(costs, 0, bound, Double.POSITIVE_INFINITY);
+        costs[source] = 0;
+        if (predecessors != null)
+            predecessors[source] = -1;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            settled[id] = true;
+            Node node = nodeIndex.nodeOf(id);
+            for (Edge edge : forward ? node.edgesLeaving : node.edgesEntering) {
+                int next = forward ? edge.successor.id : edge.predecessor.id;
+                double cost = costs[id] + edge.weight();
+                if (!settled[next] && cost < costs[next]) {
+                    costs[next] = cost;
+                    if (predecessors != null)
+                        predecessors[next] = id;
+                    heap.insertOrDecrease(next, cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs bidirectional Dijkstra: a forward search from startNode over leaving
+     * edges and a backward search from endNode over entering edges, each step
+     * advancing whichever search has the smaller next cost. Every edge relaxed
+     * toward a node the other search has reached is a candidate path; the
+     * search stops once the two next costs add up to at least the best one.
+     *
+     * @param startNode the starting node
+     * @param endNode the destination node
+     * @return SearchNode containing the end node and its shortest path information
+     * @throws NoSuchElementException if no path exists
+     */
+    protected SearchNode searchBidirectional(Node startNode, Node endNode) {
+        int bound = getNodeIdBound();
+        IndexedMinHeap forward = new IndexedMinHeap(bound, heapArity);
+        IndexedMinHeap backward = new IndexedMinHeap(bound, heapArity);
+        double[] forwardCosts = new double[bound];
+        double[] backwardCosts = new double[bound];
+        Arrays.fill(forwardCosts, Double.POSITIVE_INFINITY);
+        Arrays.fill(backwardCosts, Double.POSITIVE_INFINITY);
+        int[] predecessors = new int[bound]; // toward start, in the forward search
+        int[] successors = new int[bound]; // toward end, in the backward search
+        boolean[] forwardSettled = new boolean[bound];
+        boolean[] backwardSettled = new boolean[bound];
+
+        forwardCosts[startNode.id] = 0;
+        backwardCosts[endNode.id] = 0;
+        predecessors[startNode.id] = -1;
+        successors[endNode.id] = -1;
+        forward.insertOrDecrease(startNode.id, 0);
+        backward.insertOrDecrease(endNode.id, 0);
+        double best = startNode == endNode ? 0 : Double.POSITIVE_INFINITY;
+        int meeting = startNode == endNode ? startNode.id : -1;
+
+        while (!forward.isEmpty() && !backward.isEmpty()) {
+            double forwardNext = forward.keyOf(forward.peek());
+            double backwardNext = backward.keyOf(backward.peek());
+            if (forwardNext + backwardNext >= best)
+                break;
+            if (forwardNext <= backwardNext) {
+                int id = forward.poll();
+                forwardSettled[id] = true;
+                for (Edge edge : nodeIndex.nodeOf(id).edgesLeaving) {
+                    int next = edge.successor.id;
+                    double cost = forwardNext + edge.weight();
+                    if (!forwardSettled[next] && cost < forwardCosts[next]) {
+                        forwardCosts[next] = cost;
+                        predecessors[next] = id;
+                        forward.insertOrDecrease(next, cost);
+                    }
+                    if (cost + backwardCosts[next] < best) {
+                        best = cost + backwardCosts[next];
+                        meeting = next;
+                        predecessors[next] = id;
+                    }
+                }
+            } else {
+                int id = backward.poll();
+                backwardSettled[id] = true;
+                for (Edge edge : nodeIndex.nodeOf(id).edgesEntering) {
+                    int next = edge.predecessor.id;
+                    double cost = backwardNext + edge.weight();
+                    if (!backwardSettled[next] && cost < backwardCosts[next]) {
+                        backwardCosts[next] = cost;
+                        successors[next] = id;
+                        backward.insertOrDecrease(next, cost);
+                    }
+                    if (cost + forwardCosts[next] < best) {
+                        best = cost + forwardCosts[next];
+                        meeting = next;
+                        successors[next] = id;
+                    }
+                }
+            }
+        }
+        if (meeting < 0)
+            throw new NoSuchElementException("Path does not exist.");
+
+        // rebuild the path as a chain of SearchNodes: the forward half up to the
+        // meeting node, then the backward half on to the end
+        SearchNode current = pathTo(meeting, predecessors, forwardCosts);
+        for (int step = successors[meeting]; step >= 0; step = successors[step])
+            current = new SearchNode(nodeIndex.nodeOf(step), best - backwardCosts[step], current);
+        return current;
+    }
+
     /**
      * Returns the sequence of nodes in the shortest path from start to end
      * 
@@ -123,6 +657,18 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @throws NoSuchElementException if no path exists
      */
     public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        if (searchSnapshot) {
+            CompressedGraph<NodeType> graph = snapshot();
+            int[] ids = graph.shortestPathIds(graph.idOf(start), graph.idOf(end));
+            List<NodeType> path = new ArrayList<>(ids.length);
+            for (int id : ids)
+                path.add(graph.nodeOf(id));
+            return path;
+        }
+        if (distanceMatrix != null)
+            return distanceMatrix.shortestPathData(start, end);
+        if (treeCache != null)
+            return cachedTree(start).pathTo(end);
         SearchNode endNode = computeShortestPath(start, end);
         
         // Reconstruct path from end to start
@@ -144,10 +690,131 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * @throws NoSuchElementException if no path exists
      */
     public double shortestPathCost(NodeType start, NodeType end) {
+        if (searchSnapshot) {
+            CompressedGraph<NodeType> graph = snapshot();
+            return graph.shortestPathCost(graph.idOf(start), graph.idOf(end));
+        }
+        if (distanceMatrix != null)
+            return distanceMatrix.shortestPathCost(start, end);
+        if (treeCache != null)
+            return cachedTree(start).costTo(end);
         SearchNode endNode = computeShortestPath(start, end);
         return endNode.cost;
     }
 
+    /**
+     * Returns the nodes along the shortest path from start to end with the
+     * weight of every edge along it, from a single search in the current mode.
+     * Each weight is read from its node's leaving edges, with no further search.
+     *
+     * @param start the starting node
+     * @param end the destination node
+     * @return the nodes, edge weights and costs of the shortest path
+     * @throws NoSuchElementException if no path exists
+     */
+    public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+        List<NodeType> path = shortestPathData(start, end);
+        double[] legs = new double[path.size() - 1];
+        Iterator<NodeType> steps = path.iterator();
+        Node previous = nodes.getOrNull(steps.next());
+        for (int i = 0; steps.hasNext(); i++) {
+            Node next = nodes.getOrNull(steps.next());
+            legs[i] = previous.findLeaving(next).weight();
+            previous = next;
+        }
+        return new PathResult<>(path, legs);
+    }
+
+    /**
+     * Builds a graph of the nodes 0 to nodes - 1 joined by random edges, the
+     * fixture of the tests that compare a search mode or index to plain Dijkstra.
+     *
+     * @param random the source of the edges and their weights
+     * @param nodes the number of nodes
+     * @param edges the number of edges to insert; repeats replace earlier ones
+     * @param maxWeight the largest weight, with every weight at least 1
+     * @return the new graph
+     */
+    protected static DijkstraGraph<Integer, Integer> randomGraph(Random random, int nodes,
+            int edges, int maxWeight) {
+        DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+        for (int i = 0; i < nodes; i++)
+            graph.insertNode(i);
+        for (int i = 0; i < edges; i++)
+            graph.insertEdge(random.nextInt(nodes), random.nextInt(nodes),
+                    1 + random.nextInt(maxWeight));
+        return graph;
+    }
+
+    /**
+     * Returns the cost of the shortest path found by plain Dijkstra with a
+     * PriorityQueue, whatever the search mode, index or cache of this graph.
+     *
+     * @param start the starting node
+     * @param end the destination node
+     * @return the cost of the shortest path, or -1 if either node is missing
+     *         or no path exists
+     */
+    protected double referenceCost(NodeType start, NodeType end) {
+        Node startNode = nodes.getOrNull(start);
+        Node endNode = nodes.getOrNull(end);
+        if (startNode == null || endNode == null)
+            return -1;
+        try {
+            return searchWithPriorityQueue(startNode, endNode).cost;
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Asserts that a path runs from start to end, and that the weights of its
+     * edges in this graph add up to the expected cost.
+     *
+     * @param path the path to check
+     * @param start the node the path must start at
+     * @param end the node the path must end at
+     * @param expected the cost the path must have
+     */
+    protected void assertPath(List<NodeType> path, NodeType start, NodeType end, double expected) {
+        Assertions.assertEquals(start, path.get(0));
+        Assertions.assertEquals(end, path.get(path.size() - 1));
+        double cost = 0;
+        for (int j = 1; j < path.size(); j++)
+            cost += getEdge(path.get(j - 1), path.get(j)).doubleValue();
+        Assertions.assertEquals(expected, cost);
+    }
+
+    /**
+     * Runs queries between random nodes below a bound, the first from a node
+     * to itself, and checks each against referenceCost: queries without a path
+     * must throw NoSuchElementException, and the others must return the same
+     * cost and a path that passes assertPath.
+     *
+     * @param graph the graph the queries are about
+     * @param random the source of the query nodes
+     * @param bound a number greater than every node queried
+     * @param queries the number of queries
+     * @param cost the query for the cost of a path
+     * @param path the query for the nodes of a path
+     */
+    protected static void assertMatchesReference(DijkstraGraph<Integer, Integer> graph,
+            Random random, int bound, int queries, BiFunction<Integer, Integer, Double> cost,
+            BiFunction<Integer, Integer, List<Integer>> path) {
+        for (int i = 0; i < queries; i++) {
+            int start = random.nextInt(bound);
+            int end = i == 0 ? start : random.nextInt(bound);
+            double expected = graph.referenceCost(start, end);
+            if (expected < 0) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> cost.apply(start, end));
+                Assertions.assertThrows(NoSuchElementException.class, () -> path.apply(start, end));
+                continue;
+            }
+            Assertions.assertEquals(Double.valueOf(expected), cost.apply(start, end));
+            graph.assertPath(path.apply(start, end), start, end, expected);
+        }
+    }
+
     /**
      * Tests the shortest path algorithm on the example from lecture
      */
@@ -222,4 +889,328 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
             graph.shortestPathCost("A", "C");
         });
     }
+
+    /**
+     * Tests that nodes get dense ids, and that the id of a removed node is
+     * reused without disturbing path searches
+     */
+    @Test
+    public void testDenseNodeIds() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        Assertions.assertEquals(0, graph.idOf("A"));
+        Assertions.assertEquals(2, graph.idOf("C"));
+        Assertions.assertEquals("B", graph.nodeOf(1));
+        graph.removeNode("B");
+        Assertions.assertEquals(-1, graph.idOf("B"));
+        Assertions.assertNull(graph.nodeOf(1));
+        graph.insertNode("D");
+        Assertions.assertEquals(1, graph.idOf("D"));
+        Assertions.assertEquals(3, graph.getNodeIdBound());
+
+        graph.insertEdge("A", "D", 1);
+        graph.insertEdge("D", "C", 1);
+        Assertions.assertEquals(Arrays.asList("A", "D", "C"), graph.shortestPathData("A", "C"));
+    }
+
+    /**
+     * Tests that a frozen graph answers from its CSR snapshot, and that the
+     * snapshot is recompiled after the graph changes
+     */
+    @Test
+    public void testFrozenSearch() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        for (String node : new String[] {"A", "B", "C", "D", "E"})
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 2);
+        graph.insertEdge("A", "C", 4);
+        graph.insertEdge("B", "C", 1);
+        graph.insertEdge("B", "D", 3);
+        graph.insertEdge("C", "D", 5);
+        graph.insertEdge("D", "E", 2);
+        graph.freeze();
+        CompressedGraph<String> snapshot = graph.snapshot();
+        Assertions.assertSame(snapshot, graph.snapshot());
+        Assertions.assertEquals(6, snapshot.getEdgeCount());
+        Assertions.assertEquals(Arrays.asList("A", "B", "D", "E"), graph.shortestPathData("A", "E"));
+        Assertions.assertEquals(7, graph.shortestPathCost("A", "E"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathData("E", "A"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost("A", "Z"));
+
+        graph.insertEdge("B", "D", 9);
+        Assertions.assertNotSame(snapshot, graph.snapshot());
+        Assertions.assertEquals(Arrays.asList("A", "B", "C", "D", "E"),
+                graph.shortestPathData("A", "E"));
+        Assertions.assertEquals(10, graph.shortestPathCost("A", "E"));
+        // the old snapshot is unaffected by the change
+        Assertions.assertEquals(7, snapshot.shortestPathCost(0, 4));
+    }
+
+    /**
+     * Tests edge lookups on a hub whose degree is past the successor index
+     * threshold, both in the graph and in its frozen snapshot
+     */
+    @Test
+    public void testHubEdgeLookup() {
+        DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+        graph.insertNode(0);
+        for (int i = 1; i <= 40; i++) {
+            graph.insertNode(i);
+            graph.insertEdge(0, i, i);
+        }
+        Assertions.assertTrue(graph.containsEdge(0, 17));
+        Assertions.assertEquals(17, graph.getEdge(0, 17));
+        Assertions.assertFalse(graph.containsEdge(17, 0));
+        Assertions.assertFalse(graph.containsEdge(0, 99));
+        graph.insertEdge(0, 17, 5);
+        Assertions.assertEquals(5, graph.getEdge(0, 17));
+        Assertions.assertEquals(40, graph.getEdgeCount());
+        Assertions.assertTrue(graph.removeEdge(0, 17));
+        Assertions.assertFalse(graph.removeEdge(0, 17));
+        Assertions.assertFalse(graph.containsEdge(0, 17));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdge(0, 17));
+
+        CompressedGraph<Integer> snapshot = graph.snapshot();
+        Assertions.assertTrue(snapshot.containsEdge(snapshot.idOf(0), snapshot.idOf(30)));
+        Assertions.assertFalse(snapshot.containsEdge(snapshot.idOf(0), snapshot.idOf(17)));
+        Assertions.assertEquals(30, snapshot.getEdgeWeight(snapshot.idOf(0), snapshot.idOf(30)));
+    }
+
+    /**
+     * Tests that removing edges and hub nodes keeps both endpoint lists and the
+     * edge count consistent, in both the default and the stable order modes
+     */
+    @Test
+    public void testIndexedEdgeRemoval() {
+        for (boolean stable : new boolean[] {false, true}) {
+            DijkstraGraph<Integer, Integer> graph =
+                    new DijkstraGraph<>(new OpenAddressingHashtableMap<>(), stable);
+            for (int i = 0; i <= 5; i++)
+                graph.insertNode(i);
+            for (int i = 1; i <= 5; i++) {
+                graph.insertEdge(0, i, i);
+                graph.insertEdge(i, 0, i);
+            }
+            graph.insertEdge(0, 0, 1);
+            graph.insertEdge(1, 2, 1);
+            Assertions.assertEquals(12, graph.getEdgeCount());
+
+            Assertions.assertTrue(graph.removeEdge(0, 2));
+            List<Integer> successors = new ArrayList<>();
+            for (BaseGraph<Integer, Integer>.Edge edge : graph.nodes.get(0).edgesLeaving)
+                successors.add(edge.successor.data);
+            if (stable)
+                Assertions.assertEquals(Arrays.asList(1, 3, 4, 5, 0), successors);
+            else
+                Assertions.assertEquals(Arrays.asList(1, 0, 3, 4, 5), successors);
+
+            Assertions.assertTrue(graph.removeNode(0));
+            Assertions.assertEquals(1, graph.getEdgeCount());
+            Assertions.assertEquals(0, graph.nodes.get(1).edgesEntering.size());
+            Assertions.assertEquals(1, graph.nodes.get(2).edgesEntering.size());
+            Assertions.assertEquals(Arrays.asList(1, 2), graph.shortestPathData(1, 2));
+        }
+    }
+
+    /**
+     * Tests that listeners hear about every mutation, with the exact nodes and
+     * edges touched and increasing sequence numbers
+     */
+    @Test
+    public void testGraphListener() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        List<String> events = new ArrayList<>();
+        GraphListener<String, Integer> listener = new GraphListener<>() {
+            public void nodeInserted(long sequence, String data, int id) {
+                events.add(sequence + " +" + data + "#" + id);
+            }
+
+            public void nodeRemoved(long sequence, String data, int id) {
+                events.add(sequence + " -" + data + "#" + id);
+            }
+
+            public void edgeInserted(long sequence, String pred, String succ, Integer weight) {
+                events.add(sequence + " +" + pred + succ + "=" + weight);
+            }
+
+            public void edgeUpdated(long sequence, String pred, String succ, Integer oldWeight,
+                    Integer newWeight) {
+                events.add(sequence + " " + pred + succ + "=" + oldWeight + ">" + newWeight);
+            }
+
+            public void edgeRemoved(long sequence, String pred, String succ, Integer weight) {
+                events.add(sequence + " -" + pred + succ + "=" + weight);
+            }
+        };
+        graph.addGraphListener(listener);
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("A"); // not a mutation, so no event
+        graph.insertEdge("A", "B", 3);
+        graph.insertEdge("A", "B", 4);
+        graph.insertEdge("B", "A", 1);
+        graph.removeEdge("B", "A");
+        graph.insertEdge("B", "A", 2);
+        graph.removeNode("A");
+        Assertions.assertEquals(Arrays.asList("1 +A#0", "2 +B#1", "3 +AB=3", "4 AB=3>4",
+                "5 +BA=1", "6 -BA=1", "7 +BA=2", "8 -AB=4", "8 -BA=2", "8 -A#0"), events);
+        Assertions.assertEquals(8, graph.getModCount());
+
+        Assertions.assertTrue(graph.removeGraphListener(listener));
+        graph.insertNode("C");
+        Assertions.assertEquals(10, events.size());
+    }
+
+    /**
+     * Tests that both queue strategies, and indexed heaps of several arities,
+     * find the same shortest paths
+     */
+    @Test
+    public void testQueueStrategies() {
+        Random random = new Random(17);
+        DijkstraGraph<Integer, Integer> graph = randomGraph(random, 60, 300, 20);
+        for (int arity = 2; arity <= 8; arity += 2) {
+            graph.setQueueStrategy(QueueStrategy.INDEXED_HEAP);
+            graph.setHeapArity(arity);
+            assertMatchesReference(graph, random, 60, 20, graph::shortestPathCost,
+                    graph::shortestPathData);
+        }
+        graph.setQueueStrategy(QueueStrategy.PRIORITY_QUEUE);
+        assertMatchesReference(graph, random, 60, 20, graph::shortestPathCost,
+                graph::shortestPathData);
+    }
+
+    /**
+     * Tests that bidirectional searches find paths as short as forward ones,
+     * with consistent costs along the returned paths, also when the two
+     * frontiers meet across an edge of weight zero
+     */
+    @Test
+    public void testBidirectionalSearch() {
+        Random random = new Random(18);
+        DijkstraGraph<Integer, Integer> graph = randomGraph(random, 80, 320, 20);
+        graph.setSearchMode(SearchMode.BIDIRECTIONAL);
+        assertMatchesReference(graph, random, 80, 60, graph::shortestPathCost,
+                graph::shortestPathData);
+        for (int i = 0; i < 10; i++)
+            graph.insertEdge(random.nextInt(80), random.nextInt(80), 0);
+        assertMatchesReference(graph, random, 80, 40, graph::shortestPathCost,
+                graph::shortestPathData);
+    }
+
+    /**
+     * Tests that shortest-path trees answer like searches, and that cached
+     * trees are reused, bounded in size and dropped after a mutation
+     */
+    @Test
+    public void testShortestPathTreeCache() {
+        DijkstraGraph<Integer, Integer> graph = randomGraph(new Random(22), 60, 240, 10);
+        ShortestPathTree<Integer> tree = graph.shortestPathTree(0);
+        Assertions.assertEquals(Integer.valueOf(0), tree.getSource());
+        for (int end = 0; end < 60; end++) {
+            int target = end;
+            try {
+                double expected = graph.shortestPathCost(0, end);
+                Assertions.assertEquals(expected, tree.costTo(end));
+                Assertions.assertEquals(expected, graph.shortestPathCost(0, end));
+                Assertions.assertEquals(Integer.valueOf(end),
+                        tree.pathTo(end).get(tree.pathTo(end).size() - 1));
+            } catch (NoSuchElementException e) {
+                Assertions.assertThrows(NoSuchElementException.class, () -> tree.costTo(target));
+            }
+        }
+
+        // room for exactly two trees
+        graph.enableTreeCache(2 * tree.getMemoryBytes());
+        Assertions.assertEquals(tree.costTo(59), graph.shortestPathCost(0, 59));
+        ShortestPathTree<Integer> cached = graph.cachedTree(0);
+        Assertions.assertSame(cached, graph.cachedTree(0));
+        graph.cachedTree(1);
+        graph.cachedTree(2);
+        Assertions.assertEquals(2, graph.treeCache.size());
+        Assertions.assertNotSame(cached, graph.cachedTree(0));
+        graph.insertEdge(0, 59, 0);
+        Assertions.assertFalse(tree.isCurrent());
+        Assertions.assertThrows(IllegalStateException.class, () -> tree.costTo(59));
+        Assertions.assertEquals(0.0, graph.shortestPathCost(0, 59));
+        Assertions.assertEquals(Arrays.asList(0, 59), graph.shortestPathData(0, 59));
+        Assertions.assertEquals(1, graph.treeCache.size());
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPathTree(99));
+    }
+
+    /**
+     * Tests that queries are answered from a prepared distance matrix, and
+     * stay correct after a mutation
+     */
+    @Test
+    public void testDistanceMatrixQueries() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        for (String node : new String[] {"A", "B", "C", "D"})
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 4);
+        graph.insertEdge("B", "C", 4);
+        graph.insertEdge("A", "C", 10);
+        DistanceMatrix<String> matrix = graph.prepareDistanceMatrix(DistanceMatrix.Strategy.AUTO);
+        Assertions.assertEquals(DistanceMatrix.Strategy.FLOYD_WARSHALL, matrix.resolveStrategy());
+        Assertions.assertEquals(8.0, graph.shortestPathCost("A", "C"));
+        Assertions.assertEquals(Arrays.asList("A", "B", "C"), graph.shortestPathData("A", "C"));
+        graph.insertEdge("A", "C", 3);
+        Assertions.assertEquals(Arrays.asList("A", "C"), graph.shortestPathData("A", "C"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathCost("A", "D"));
+        graph.dropDistanceMatrix();
+        Assertions.assertEquals(3.0, graph.shortestPathCost("A", "C"));
+    }
+
+    /**
+     * Tests that searches into a reused list match shortestPathData, and that
+     * the thread's workspace is reused across graphs of different sizes
+     */
+    @Test
+    public void testShortestPathInto() {
+        Random random = new Random(24);
+        DijkstraGraph<Integer, Integer> graph = randomGraph(random, 80, 320, 15);
+        List<Integer> out = new ArrayList<>();
+        assertMatchesReference(graph, random, 80, 60,
+                (start, end) -> graph.shortestPathInto(start, end, out), (start, end) -> {
+                    graph.shortestPathInto(start, end, out);
+                    return out;
+                });
+        SearchWorkspace workspace = WORKSPACES.get();
+        DijkstraGraph<String, Integer> small = new DijkstraGraph<>();
+        small.insertNode("A");
+        small.insertNode("B");
+        small.insertEdge("A", "B", 2);
+        List<String> letters = new ArrayList<>();
+        Assertions.assertEquals(2.0, small.shortestPathInto("A", "B", letters));
+        Assertions.assertEquals(Arrays.asList("A", "B"), letters);
+        Assertions.assertSame(workspace, WORKSPACES.get());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> small.shortestPathInto("B", "A", new ArrayList<>()));
+    }
+
+    /**
+     * Tests that one search returns the path, its edge weights and its costs
+     */
+    @Test
+    public void testPathResult() {
+        DijkstraGraph<String, Integer> graph = new DijkstraGraph<>();
+        for (String node : new String[] {"A", "B", "C", "D"})
+            graph.insertNode(node);
+        graph.insertEdge("A", "B", 2);
+        graph.insertEdge("B", "C", 3);
+        graph.insertEdge("A", "C", 9);
+        PathResult<String> result = graph.shortestPath("A", "C");
+        Assertions.assertEquals(Arrays.asList("A", "B", "C"), result.getNodes());
+        Assertions.assertEquals(Arrays.asList(2.0, 3.0), result.getLegCosts());
+        Assertions.assertEquals(Arrays.asList(0.0, 2.0, 5.0), result.getCumulativeCosts());
+        Assertions.assertEquals(5.0, result.getTotalCost());
+        Assertions.assertEquals(0.0, graph.shortestPath("D", "D").getTotalCost());
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.shortestPath("C", "A"));
+        Assertions.assertTrue(PathResult.empty().isEmpty());
+    }
 }
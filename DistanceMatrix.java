@@ -0,0 +1,342 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * All-pairs shortest path costs of a DijkstraGraph, as a dense row-major cost
+ * matrix indexed by node id plus a next-hop matrix, so that a cost is one
+ * array read and a path is one read per node on it. Meant for small graphs
+ * that are queried constantly, such as a campus map of a few hundred nodes.
+ *
+ * Dense graphs are computed by a cache-blocked Floyd-Warshall, whose blocks
+ * off the diagonal run in parallel; sparse graphs by a Dijkstra search from
+ * every source, in parallel on the common fork-join pool. The matrix is
+ * recomputed lazily on the first query after its graph changes.
+ */
+public class DistanceMatrix<NodeType> {
+
+    /**
+     * The ways the matrix can be computed. AUTO picks FLOYD_WARSHALL when at
+     * least DENSE_THRESHOLD of all possible edges exist, and PARALLEL_DIJKSTRA
+     * otherwise.
+     */
+    public enum Strategy {
+        AUTO,
+        FLOYD_WARSHALL,
+        PARALLEL_DIJKSTRA
+    }
+
+    public static final double DENSE_THRESHOLD = 0.1;
+    protected static final int BLOCK = 64; // rows and columns per Floyd-Warshall block
+
+    // The computed matrices, replaced as a whole so readers never see a mix
+    protected static final class Tables {
+        public final long version; // modification count of the graph when computed
+        public final int size; // rows and columns, the node id bound
+        public final double[] costs; // [from * size + to]
+        public final int[] next; // id after from on the path to to, or -1
+
+        public Tables(long version, int size, double[] costs, int[] next) {
+            this.version = version;
+            this.size = size;
+            this.costs = costs;
+            this.next = next;
+        }
+    }
+
+    protected final DijkstraGraph<NodeType, ?> graph;
+    protected final Strategy strategy;
+    protected volatile Tables tables = null;
+
+    /**
+     * Creates a new DistanceMatrix of a graph. The matrices are computed on
+     * the first query.
+     *
+     * @param graph the graph to compute costs for
+     * @param strategy the way to compute the matrices
+     */
+    public DistanceMatrix(DijkstraGraph<NodeType, ?> graph, Strategy strategy) {
+        this.graph = graph;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Creates a new DistanceMatrix of an empty DijkstraGraph
+     */
+    public DistanceMatrix() {
+        this(new DijkstraGraph<>(), Strategy.AUTO);
+    }
+
+    /**
+     * Recomputes the matrices if the graph changed since they were computed.
+     *
+     * @return the current matrices
+     */
+    protected Tables refresh() {
+        Tables current = tables;
+        if (current != null && current.version == graph.getModCount())
+            return current;
+        synchronized (this) {
+            current = tables;
+            if (current == null || current.version != graph.getModCount()) {
+                current = compute();
+                tables = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Checks whether the graph changed since the matrices were computed, so
+     * that the next query would recompute them.
+     *
+     * @return true if the matrices are missing or out of date
+     */
+    public boolean isStale() {
+        Tables current = tables;
+        return current == null || current.version != graph.getModCount();
+    }
+
+    /**
+     * Return the strategy the matrices would be computed with now, resolving
+     * AUTO by the density of the graph.
+     *
+     * @return FLOYD_WARSHALL or PARALLEL_DIJKSTRA
+     */
+    public Strategy resolveStrategy() {
+        if (strategy != Strategy.AUTO)
+            return strategy;
+        double n = graph.getNodeCount();
+        double density = n < 2 ? 1 : graph.getEdgeCount() / (n * (n - 1));
+        return density >= DENSE_THRESHOLD ? Strategy.FLOYD_WARSHALL : Strategy.PARALLEL_DIJKSTRA;
+    }
+
+    // computes both matrices from the graph as it is now
+    protected Tables compute() {
+        long version = graph.getModCount();
+        CompressedGraph<NodeType> snapshot = graph.snapshot();
+        int n = snapshot.getNodeIdBound();
+        double[] costs = new double[n * n];
+        int[] next = new int[n * n];
+        if (resolveStrategy() == Strategy.FLOYD_WARSHALL)
+            floydWarshall(snapshot, costs, next);
+        else
+            parallelDijkstra(snapshot, costs, next);
+        return new Tables(version, n, costs, next);
+    }
+
+    /**
+     * Fills the matrices by Floyd-Warshall over blocks of BLOCK ids. For each
+     * diagonal block k, the block itself is relaxed first, then every other
+     * block of row and column k in parallel, then every remaining block in
+     * parallel, so that each pass streams a few cache-sized blocks. The inner
+     * loop runs over contiguous columns of one row, which the JIT compiler can
+     * vectorize.
+     */
+    protected static void floydWarshall(CompressedGraph<?> graph, double[] costs, int[] next) {
+        int n = graph.getNodeIdBound();
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+        for (int id = 0; id < n; id++) {
+            if (graph.nodeOf(id) == null)
+                continue;
+            costs[id * n + id] = 0;
+            next[id * n + id] = id;
+            for (int e = graph.offsets[id]; e < graph.offsets[id + 1]; e++) {
+                int cell = id * n + graph.targets[e];
+                if (graph.weights[e] < costs[cell]) {
+                    costs[cell] = graph.weights[e];
+                    next[cell] = graph.targets[e];
+                }
+            }
+        }
+        int blocks = (n + BLOCK - 1) / BLOCK;
+        for (int k = 0; k < blocks; k++) {
+            final int kb = k;
+            relaxBlock(costs, next, n, kb, kb, kb);
+            IntStream.range(0, blocks).parallel().filter(b -> b != kb).forEach(b -> {
+                relaxBlock(costs, next, n, kb, b, kb);
+                relaxBlock(costs, next, n, b, kb, kb);
+            });
+            IntStream.range(0, blocks * blocks).parallel().forEach(cell -> {
+                int ib = cell / blocks;
+                int jb = cell % blocks;
+                if (ib != kb && jb != kb)
+                    relaxBlock(costs, next, n, ib, jb, kb);
+            });
+        }
+    }
+
+    // relaxes block (ib, jb) through every intermediate id of block kb
+    protected static void relaxBlock(double[] costs, int[] next, int n, int ib, int jb, int kb) {
+        int iEnd = Math.min(n, (ib + 1) * BLOCK);
+        int jStart = jb * BLOCK;
+        int jEnd = Math.min(n, jStart + BLOCK);
+        int kEnd = Math.min(n, (kb + 1) * BLOCK);
+        for (int k = kb * BLOCK; k < kEnd; k++) {
+            int kRow = k * n;
+            for (int i = ib * BLOCK; i < iEnd; i++) {
+                int iRow = i * n;
+                double viaCost = costs[iRow + k];
+                if (viaCost == Double.POSITIVE_INFINITY)
+                    continue;
+                int viaNext = next[iRow + k];
+                for (int j = jStart; j < jEnd; j++) {
+                    double cost = viaCost + costs[kRow + j];
+                    if (cost < costs[iRow + j]) {
+                        costs[iRow + j] = cost;
+                        next[iRow + j] = viaNext;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the matrices by a Dijkstra search from every node, in parallel,
+     * turning each search's predecessors into the first hop of every path.
+     */
+    protected static void parallelDijkstra(CompressedGraph<?> graph, double[] costs, int[] next) {
+        int n = graph.getNodeIdBound();
+        IntStream.range(0, n).parallel().forEach(source -> {
+            int row = source * n;
+            if (graph.nodeOf(source) == null) {
+                Arrays.fill(costs, row, row + n, Double.POSITIVE_INFINITY);
+                Arrays.fill(next, row, row + n, -1);
+                return;
+            }
+            double[] rowCosts = new double[n];
+            int[] predecessors = new int[n];
+            searchAll(graph, source, rowCosts, predecessors);
+            System.arraycopy(rowCosts, 0, costs, row, n);
+            // each node's first hop is its predecessor's, or itself after the source
+            Arrays.fill(next, row, row + n, -2);
+            next[row + source] = source;
+            int[] stack = new int[n];
+            for (int id = 0; id < n; id++) {
+                if (rowCosts[id] == Double.POSITIVE_INFINITY) {
+                    next[row + id] = -1;
+                    continue;
+                }
+                int size = 0;
+                int step = id;
+                while (next[row + step] == -2) {
+                    stack[size++] = step;
+                    step = predecessors[step];
+                }
+                int hop = next[row + step];
+                while (size > 0) {
+                    int node = stack[--size];
+                    if (predecessors[node] == source)
+                        hop = node;
+                    next[row + node] = hop;
+                }
+            }
+        });
+    }
+
+    // one-to-all Dijkstra over the CSR arrays of a snapshot
+    private static void searchAll(CompressedGraph<?> graph, int source, double[] costs,
+            int[] predecessors) {
+        int n = costs.length;
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        boolean[] settled = new boolean[n];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[source] = 0;
+        predecessors[source] = -1;
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int id = heap.poll();
+            settled[id] = true;
+            for (int e = graph.offsets[id]; e < graph.offsets[id + 1]; e++) {
+                int target = graph.targets[e];
+                double cost = costs[id] + graph.weights[e];
+                if (!settled[target] && cost < costs[target]) {
+                    costs[target] = cost;
+                    predecessors[target] = id;
+                    heap.insertOrDecrease(target, cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        Tables current = refresh();
+        return current.costs[cell(current, start, end)];
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * start to end, by following the next-hop matrix.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        Tables current = refresh();
+        cell(current, start, end);
+        int to = graph.idOf(end);
+        List<NodeType> path = new ArrayList<>();
+        path.add(start);
+        for (int id = graph.idOf(start); id != to; ) {
+            id = current.next[id * current.size + to];
+            path.add(graph.nodeOf(id));
+        }
+        return path;
+    }
+
+    // the matrix index of a connected pair of nodes
+    protected int cell(Tables current, NodeType start, NodeType end) {
+        int from = start == null ? -1 : graph.idOf(start);
+        int to = end == null ? -1 : graph.idOf(end);
+        if (from < 0 || to < 0 || from >= current.size || to >= current.size)
+            throw new NoSuchElementException("Start or end node not found.");
+        int cell = from * current.size + to;
+        if (current.next[cell] < 0)
+            throw new NoSuchElementException("Path does not exist.");
+        return cell;
+    }
+
+    /**
+     * Tests that both strategies match plain Dijkstra, and that the matrix is
+     * recomputed after the graph changes
+     */
+    @Test
+    public void testStrategiesMatchDijkstra() {
+        Random random = new Random(23);
+        DijkstraGraph<Integer, Integer> graph = DijkstraGraph.randomGraph(random, 150, 700, 30);
+        graph.removeNode(75);
+        DistanceMatrix<Integer> blocked = new DistanceMatrix<>(graph, Strategy.FLOYD_WARSHALL);
+        DistanceMatrix<Integer> searched = new DistanceMatrix<>(graph, Strategy.PARALLEL_DIJKSTRA);
+        Assertions.assertEquals(Strategy.PARALLEL_DIJKSTRA,
+                new DistanceMatrix<>(graph, Strategy.AUTO).resolveStrategy());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> blocked.shortestPathCost(75, 0));
+
+        for (int round = 0; round < 2; round++) {
+            for (DistanceMatrix<Integer> matrix : List.of(blocked, searched))
+                DijkstraGraph.assertMatchesReference(graph, random, 150, 75,
+                        matrix::shortestPathCost, matrix::shortestPathData);
+            graph.insertEdge(0, 149, 1);
+            Assertions.assertEquals(1.0, blocked.shortestPathCost(0, 149));
+        }
+    }
+}
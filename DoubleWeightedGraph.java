@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * DijkstraGraph specialization that stores every edge weight in a primitive
+ * double field, rather than as a boxed Double. Weights passed to or returned
+ * from the GraphADT methods are boxed and unboxed at the call, but the
+ * primitive insertEdge and getEdgeWeight methods and the path searches never
+ * box a weight.
+ */
+public class DoubleWeightedGraph<NodeType> extends DijkstraGraph<NodeType, Double> {
+
+    // Edge whose weight is kept in a primitive field, with data left null
+    protected class DoubleEdge extends Edge {
+        public double weight;
+
+        public DoubleEdge(double weight, Node pred, Node succ) {
+            super(null, pred, succ);
+            this.weight = weight;
+        }
+
+        public double weight() {
+            return weight;
+        }
+
+        public Double getData() {
+            return weight;
+        }
+    }
+
+    /**
+     * Creates a new DoubleWeightedGraph with an OpenAddressingHashtableMap as
+     * its underlying storage
+     */
+    public DoubleWeightedGraph() {
+        super();
+    }
+
+    /**
+     * Creates a new DoubleWeightedGraph that stores its nodes in the provided
+     * map
+     *
+     * @param map the map the graph uses to map a data object to the node object
+     *        it is stored in
+     */
+    public DoubleWeightedGraph(MapADT<NodeType, BaseGraph<NodeType, Double>.Node> map) {
+        super(map);
+    }
+
+    /**
+     * Insert a new directed edge with a primitive weight into the graph. Or if
+     * an edge between pred and succ already exists, update its weight.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, double weight) {
+        Node predNode = nodes.getOrNull(pred);
+        Node succNode = nodes.getOrNull(succ);
+        if (predNode == null || succNode == null)
+            return false;
+        DoubleEdge existingEdge = (DoubleEdge) predNode.findLeaving(succNode);
+        if (existingEdge != null) {
+            double oldWeight = existingEdge.weight;
+            existingEdge.weight = weight;
+            modCount++;
+            // weights are only boxed when there are listeners to receive them
+            if (!listeners.isEmpty())
+                fireEdgeUpdated(existingEdge, oldWeight);
+        } else {
+            DoubleEdge newEdge = new DoubleEdge(weight, predNode, succNode);
+            addEdge(newEdge);
+            modCount++;
+            fireEdgeInserted(newEdge);
+        }
+        return true;
+    }
+
+    /**
+     * Insert or update a directed edge, unboxing its weight.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        return insertEdge(pred, succ, weight.doubleValue());
+    }
+
+    /**
+     * Adds a new edge between two nodes given by id, without checking whether
+     * such an edge already exists. Callers such as GraphBuilder must ensure
+     * that it does not.
+     *
+     * @param predId the id of the new edge's predecessor node
+     * @param succId the id of the new edge's successor node
+     * @param weight the non-negative weight of the new edge
+     */
+    protected void appendEdge(int predId, int succId, double weight) {
+        DoubleEdge newEdge = new DoubleEdge(weight, nodeIndex.nodeOf(predId),
+                nodeIndex.nodeOf(succId));
+        addEdge(newEdge);
+        modCount++;
+        fireEdgeInserted(newEdge);
+    }
+
+    /**
+     * Return the weight of a specific edge, without boxing it.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the non-negative weight of the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public double getEdgeWeight(NodeType pred, NodeType succ) {
+        return getEdgeHelper(pred, succ).weight();
+    }
+
+    /**
+     * Tests that primitive weights are stored, updated and searched
+     */
+    @Test
+    public void testPrimitiveWeights() {
+        DoubleWeightedGraph<String> graph = new DoubleWeightedGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        Assertions.assertTrue(graph.insertEdge("A", "B", 1.5));
+        Assertions.assertTrue(graph.insertEdge("B", "C", 2.25));
+        Assertions.assertTrue(graph.insertEdge("A", "C", Double.valueOf(5.0)));
+        Assertions.assertFalse(graph.insertEdge("A", "Z", 1.0));
+        Assertions.assertEquals(1.5, graph.getEdgeWeight("A", "B"));
+        Assertions.assertEquals(Double.valueOf(2.25), graph.getEdge("B", "C"));
+        Assertions.assertEquals(Arrays.asList("A", "B", "C"), graph.shortestPathData("A", "C"));
+        Assertions.assertEquals(3.75, graph.shortestPathCost("A", "C"));
+
+        graph.insertEdge("A", "C", 3.0);
+        Assertions.assertEquals(3, graph.getEdgeCount());
+        Assertions.assertEquals(3.0, graph.shortestPathCost("A", "C"));
+        graph.freeze();
+        Assertions.assertEquals(3.0, graph.shortestPathCost("A", "C"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdgeWeight("C", "A"));
+    }
+}
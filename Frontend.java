@@ -53,10 +53,13 @@ public class Frontend implements FrontendInterface {
         );
 
         List<String> path;
+        PathResult<String> result;
 
-        // Check whether these locations are connected
+        // Check whether these locations are connected, finding the path and
+        // its times with a single search
         try {
-            path = backend.findLocationsOnShortestPath(start, end);
+            result = backend.findShortestPath(start, end);
+            path = result.getNodes();
             if (path.isEmpty()) {
                 lines.append("<p>No path found</p>");
                 return lines.toString();
@@ -73,8 +76,7 @@ public class Frontend implements FrontendInterface {
         lines.append("</ol>");
 
         // Get total travel time
-	List<Double> times = backend.findTimesOnShortestPath(start, end);
-        double time = times.get(times.size() - 1);
+        double time = result.getTotalCost();
         lines.append("<p>Total Travel Time: ").append(time).append("</p>");
 
         return lines.toString();
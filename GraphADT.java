@@ -137,5 +137,20 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
    *         start node to the end node
    */
   public double shortestPathCost(NodeType start, NodeType end);
+
+  /**
+   * Returns the nodes along the shortest path from the node containing the
+   * start data to the node containing the end data, together with the weight
+   * of each edge along it and the cost of reaching each node, all from a
+   * single search.
+   *
+   * @param start the data item in the starting node for the path
+   * @param end the data item in the destination node for the path
+   * @return the nodes, edge weights and costs of the shortest path
+   * @throws NoSuchElementException if either the start or end node cannot
+   *         be found in the graph, or if there is no directed path from the
+   *         start node to the end node
+   */
+  public PathResult<NodeType> shortestPath(NodeType start, NodeType end);
     
 }
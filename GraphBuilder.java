@@ -0,0 +1,236 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * Collects nodes and weighted edges in primitive arrays, then builds the whole
+ * graph in one step. Edges are given as (pred, succ, weight) triples, one at a
+ * time, from parallel arrays, or from a stream; when the same edge is added
+ * more than once, the weight added last is kept, as with insertEdge. Node and
+ * edge count hints size the arrays and the finished graph's node map up front.
+ */
+public class GraphBuilder<NodeType> {
+
+    protected MapADT<NodeType, Integer> ids; // builder id of each node, by data
+    protected Object[] nodeData = null; // data of each node, by builder id
+    protected int nodeCount = 0;
+
+    protected int[] preds;
+    protected int[] succs;
+    protected double[] weights;
+    protected int edgeCount = 0;
+
+    /**
+     * Creates a new GraphBuilder sized for a number of nodes and edges. The
+     * builder still grows past these hints when needed.
+     *
+     * @param nodeCountHint the expected number of nodes
+     * @param edgeCountHint the expected number of edges
+     */
+    public GraphBuilder(int nodeCountHint, int edgeCountHint) {
+        nodeCountHint = Math.max(nodeCountHint, 16);
+        edgeCountHint = Math.max(edgeCountHint, 16);
+        ids = new OpenAddressingHashtableMap<>(nodeCountHint * 4 / 3 + 1);
+        nodeData = new Object[nodeCountHint];
+        preds = new int[edgeCountHint];
+        succs = new int[edgeCountHint];
+        weights = new double[edgeCountHint];
+    }
+
+    /**
+     * Creates a new GraphBuilder with small default sizes
+     */
+    public GraphBuilder() {
+        this(64, 256);
+    }
+
+    /**
+     * Adds a node, unless it was already added on its own or by an edge.
+     *
+     * @param data the data item stored in the node
+     * @return this builder
+     * @throws NullPointerException if data is null
+     */
+    public GraphBuilder<NodeType> addNode(NodeType data) {
+        idOf(data);
+        return this;
+    }
+
+    /**
+     * Adds a directed edge, along with any of its nodes not yet added.
+     *
+     * @param pred   the data item contained in the edge's predecessor node
+     * @param succ   the data item contained in the edge's successor node
+     * @param weight the non-negative weight of the edge
+     * @return this builder
+     * @throws NullPointerException if pred or succ is null
+     */
+    public GraphBuilder<NodeType> addEdge(NodeType pred, NodeType succ, double weight) {
+        int predId = idOf(pred);
+        int succId = idOf(succ);
+        if (edgeCount == preds.length) {
+            preds = Arrays.copyOf(preds, edgeCount * 2);
+            succs = Arrays.copyOf(succs, edgeCount * 2);
+            weights = Arrays.copyOf(weights, edgeCount * 2);
+        }
+        preds[edgeCount] = predId;
+        succs[edgeCount] = succId;
+        weights[edgeCount++] = weight;
+        return this;
+    }
+
+    /**
+     * Adds the directed edges given by parallel arrays of triples.
+     *
+     * @param preds   the predecessor of each edge
+     * @param succs   the successor of each edge
+     * @param weights the weight of each edge
+     * @return this builder
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public GraphBuilder<NodeType> addEdges(NodeType[] preds, NodeType[] succs, double[] weights) {
+        if (preds.length != succs.length || preds.length != weights.length)
+            throw new IllegalArgumentException("Edge arrays differ in length.");
+        for (int i = 0; i < preds.length; i++)
+            addEdge(preds[i], succs[i], weights[i]);
+        return this;
+    }
+
+    /**
+     * Adds one directed edge for every item of a stream, such as the parsed
+     * lines of an export, without creating an object per edge.
+     *
+     * @param items  the items that describe the edges
+     * @param pred   extracts the predecessor of an item's edge
+     * @param succ   extracts the successor of an item's edge
+     * @param weight extracts the weight of an item's edge
+     * @return this builder
+     */
+    public <T> GraphBuilder<NodeType> addEdges(Stream<T> items, Function<T, NodeType> pred,
+            Function<T, NodeType> succ, ToDoubleFunction<T> weight) {
+        items.forEachOrdered(item -> addEdge(pred.apply(item), succ.apply(item),
+                weight.applyAsDouble(item)));
+        return this;
+    }
+
+    /**
+     * Return the number of distinct nodes added so far.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Looks up the builder id of a node, adding the node if it is new.
+     *
+     * @param data the data item stored in the node
+     * @return the id of the node within this builder
+     */
+    protected int idOf(NodeType data) {
+        Integer id = ids.getOrNull(data); // throws NPE when data's null
+        if (id != null)
+            return id;
+        if (nodeCount == nodeData.length)
+            nodeData = Arrays.copyOf(nodeData, nodeCount * 2);
+        nodeData[nodeCount] = data;
+        ids.put(data, nodeCount);
+        return nodeCount++;
+    }
+
+    /**
+     * Builds a graph that holds every node and edge added so far. Duplicate
+     * edges are resolved in one sorting pass over each node's edges, and each
+     * node's edge lists are sized exactly before any edge is added.
+     *
+     * @return a new graph with all the added nodes and edges
+     */
+    @SuppressWarnings("unchecked")
+    public DoubleWeightedGraph<NodeType> build() {
+        // group the edges by predecessor, keeping them in the order added
+        int[] rowStart = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++)
+            rowStart[preds[i] + 1]++;
+        for (int id = 0; id < nodeCount; id++)
+            rowStart[id + 1] += rowStart[id];
+        int[] next = Arrays.copyOf(rowStart, nodeCount);
+        int[] byPred = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++)
+            byPred[next[preds[i]]++] = i;
+
+        // sort each row by successor, then keep only the last of each duplicate
+        int[] kept = new int[edgeCount];
+        int keptCount = 0;
+        int[] leaving = new int[nodeCount];
+        int[] entering = new int[nodeCount];
+        long[] row = new long[16];
+        for (int id = 0; id < nodeCount; id++) {
+            int length = rowStart[id + 1] - rowStart[id];
+            if (row.length < length)
+                row = new long[length * 2];
+            for (int j = 0; j < length; j++) {
+                int edge = byPred[rowStart[id] + j];
+                row[j] = ((long) succs[edge] << 32) | j; // ties keep insertion order
+            }
+            Arrays.sort(row, 0, length);
+            for (int j = 0; j < length; j++) {
+                if (j + 1 < length && (row[j + 1] >>> 32) == (row[j] >>> 32))
+                    continue; // a later edge replaces this one
+                int edge = byPred[rowStart[id] + (int) row[j]];
+                kept[keptCount++] = edge;
+                leaving[id]++;
+                entering[succs[edge]]++;
+            }
+        }
+
+        DoubleWeightedGraph<NodeType> graph = new DoubleWeightedGraph<>(
+                new OpenAddressingHashtableMap<>(nodeCount * 4 / 3 + 1));
+        // a new graph assigns ids in insertion order, matching this builder's
+        for (int id = 0; id < nodeCount; id++) {
+            graph.insertNode((NodeType) nodeData[id]);
+            graph.reserveEdges(id, leaving[id], entering[id]);
+        }
+        for (int i = 0; i < keptCount; i++) {
+            int edge = kept[i];
+            graph.appendEdge(preds[edge], succs[edge], weights[edge]);
+        }
+        return graph;
+    }
+
+    /**
+     * Tests that duplicate edges keep their last weight, and that the built
+     * graph answers the same queries as one built edge by edge
+     */
+    @Test
+    public void testBuild() {
+        GraphBuilder<String> builder = new GraphBuilder<>(2, 2);
+        builder.addNode("Z");
+        builder.addEdges(new String[] {"A", "A", "B", "C"}, new String[] {"B", "C", "C", "D"},
+                new double[] {2, 4, 1, 5});
+        builder.addEdges(Stream.of("B D 3", "D E 2", "A C 9"), line -> line.split(" ")[0],
+                line -> line.split(" ")[1], line -> Double.parseDouble(line.split(" ")[2]));
+        builder.addEdge("C", "D", 5.5);
+        DoubleWeightedGraph<String> graph = builder.build();
+
+        Assertions.assertEquals(6, graph.getNodeCount());
+        Assertions.assertEquals(6, graph.getEdgeCount());
+        Assertions.assertTrue(graph.containsNode("Z"));
+        Assertions.assertEquals(9.0, graph.getEdgeWeight("A", "C"));
+        Assertions.assertEquals(5.5, graph.getEdgeWeight("C", "D"));
+        Assertions.assertEquals(1, graph.idOf("A"));
+        Assertions.assertEquals(List.of("A", "B", "D", "E"), graph.shortestPathData("A", "E"));
+        Assertions.assertEquals(7.0, graph.shortestPathCost("A", "E"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathData("E", "A"));
+        // the built graph stays fully mutable
+        Assertions.assertTrue(graph.removeNode("B"));
+        Assertions.assertEquals(3, graph.getEdgeCount());
+    }
+}
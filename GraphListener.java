@@ -0,0 +1,67 @@
+/**
+ * Observer of the mutations made to a BaseGraph, so that caches and indexes
+ * derived from the graph can repair just the parts a mutation touched. Every
+ * callback receives the graph's modification count after the mutation, which
+ * increases with each mutation; all events caused by one mutation, such as
+ * the removal of a node and its edges, share that sequence number. Each
+ * callback does nothing unless overridden.
+ *
+ * @param NodeType is the data type stored at each graph node
+ * @param EdgeType is the numeric data type stored at each graph edge
+ */
+public interface GraphListener<NodeType, EdgeType extends Number> {
+
+  /**
+   * Called after a node is inserted.
+   *
+   * @param sequence the modification count of the graph after this mutation
+   * @param data the data item stored in the new node
+   * @param id the dense id assigned to the new node
+   */
+  public default void nodeInserted(long sequence, NodeType data, int id) {}
+
+  /**
+   * Called after a node is removed, and after edgeRemoved was called for
+   * each edge that was removed along with it.
+   *
+   * @param sequence the modification count of the graph after this mutation
+   * @param data the data item that was stored in the node
+   * @param id the dense id the node had, which may later be reused
+   */
+  public default void nodeRemoved(long sequence, NodeType data, int id) {}
+
+  /**
+   * Called after a new edge is inserted.
+   *
+   * @param sequence the modification count of the graph after this mutation
+   * @param pred the data item contained in the edge's predecessor node
+   * @param succ the data item contained in the edge's successor node
+   * @param weight the weight of the new edge
+   */
+  public default void edgeInserted(long sequence, NodeType pred, NodeType succ,
+      EdgeType weight) {}
+
+  /**
+   * Called after the weight of an existing edge is replaced.
+   *
+   * @param sequence the modification count of the graph after this mutation
+   * @param pred the data item contained in the edge's predecessor node
+   * @param succ the data item contained in the edge's successor node
+   * @param oldWeight the weight the edge had before
+   * @param newWeight the weight the edge has now
+   */
+  public default void edgeUpdated(long sequence, NodeType pred, NodeType succ,
+      EdgeType oldWeight, EdgeType newWeight) {}
+
+  /**
+   * Called after an edge is removed, on its own or along with a node.
+   *
+   * @param sequence the modification count of the graph after this mutation
+   * @param pred the data item contained in the edge's predecessor node
+   * @param succ the data item contained in the edge's successor node
+   * @param weight the weight the edge had
+   */
+  public default void edgeRemoved(long sequence, NodeType pred, NodeType succ,
+      EdgeType weight) {}
+
+}
@@ -80,6 +80,14 @@ public class Graph_Placeholder implements GraphADT<String, Double> {
     return list;
   }
 
+  public PathResult<String> shortestPath(String start, String end) {
+    List<String> nodes = shortestPathData(start, end);
+    double[] legs = new double[Math.max(nodes.size() - 1, 0)];
+    for(int i=1;i<nodes.size();i++)
+      legs[i-1] = getEdge(nodes.get(i-1), nodes.get(i));
+    return new PathResult<>(nodes, legs);
+  }
+
   public double shortestPathCost(String start, String end) {
     boolean capture = false;
     double sum = 0;
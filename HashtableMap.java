@@ -5,8 +5,18 @@
 // Lecturer: Florian Heimerl
 // Notes to Grader: N/A
 
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,20 +40,145 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
         }
     }
 
-    protected LinkedList<Pair>[] table = null;
+    /**
+     * Bucket that keeps its pairs in a balanced search tree instead of a list,
+     * ordered by hash code and then by the keys' natural ordering. A bucket is
+     * converted into a TreeBin once it holds more than TREEIFY_THRESHOLD pairs
+     * whose keys are all Comparable instances of the same class, and back into
+     * a list once it shrinks to UNTREEIFY_THRESHOLD pairs.
+     */
+    protected class TreeBin extends AbstractCollection<Pair> {
+        public final Class<?> keyClass; // every key in this bin is of this class
+        public final TreeMap<KeyType, Pair> tree;
+
+        /**
+         * Constructs a new TreeBin for keys of the specified class.
+         * @param keyClass the class shared by all keys of this bin
+         */
+        @SuppressWarnings("unchecked")
+        public TreeBin(Class<?> keyClass) {
+            this.keyClass = keyClass;
+            this.tree = new TreeMap<>((a, b) -> {
+                int order = Integer.compare(hash(a), hash(b));
+                return order != 0 ? order : ((Comparable<Object>) a).compareTo(b);
+            });
+        }
+
+        /**
+         * Checks whether a key can be stored in or looked up through the tree.
+         * @param key the key to check
+         * @return true if key is of this bin's key class
+         */
+        public boolean accepts(Object key) {
+            return key.getClass() == keyClass;
+        }
+
+        @Override
+        public boolean add(Pair pair) {
+            tree.put(pair.key, pair);
+            return true;
+        }
+
+        @Override
+        public Iterator<Pair> iterator() {
+            return tree.values().iterator();
+        }
+
+        @Override
+        public int size() {
+            return tree.size();
+        }
+    }
+
+    // buckets hold lists of pairs, or TreeBins once they grow past this many pairs
+    protected static final int TREEIFY_THRESHOLD = 8;
+    protected static final int UNTREEIFY_THRESHOLD = 6;
+
+    protected Collection<Pair>[] table = null;
+    protected int size = 0; // number of pairs, maintained by every mutation
+    protected final int hashSeed; // mixes key hash codes when non-zero
+
+    // Incremental rehashing: instead of moving every pair when the table grows,
+    // the previous table stays live in oldTable and each operation moves a few
+    // of its buckets, starting from migrateIndex, into the new table.
+    protected static final int REHASH_STEP = 4; // non-empty buckets moved per operation
+    protected final boolean incrementalResize;
+    protected Collection<Pair>[] oldTable = null; // null unless a migration is under way
+    protected int migrateIndex = 0; // oldTable buckets below this index are already moved
+    protected int activeVisits = 0; // forEach walks in progress, which pause migration
+
+    protected List<KeyType> keySnapshot = null; // cleared whenever a key is added or removed
+
+    /**
+     * Iterator over the keys of every bucket in the table, followed by those
+     * still in the old table during a migration.
+     */
+    protected class KeyIterator implements Iterator<KeyType> {
+        private Collection<Pair>[] tab = table;
+        private int index = 0;
+        private Iterator<Pair> bucketIterator = null;
+
+        @Override
+        public boolean hasNext() {
+            while (bucketIterator == null || !bucketIterator.hasNext()) {
+                if (index == tab.length) {
+                    if (tab != table || oldTable == null) return false;
+                    tab = oldTable;
+                    index = 0;
+                    continue;
+                }
+                Collection<Pair> chaining = tab[index++];
+                bucketIterator = chaining == null ? null : chaining.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public KeyType next() {
+            if (!hasNext()) throw new NoSuchElementException("No more keys");
+            return bucketIterator.next().key;
+        }
+    }
 
     /**
      * Constructor to initialize the hashtable with a given capacity.
      * @param capacity the initial size of the hashtable
+     * @param incrementalResize whether the table should grow incrementally,
+     *        spreading the rehashing work over the operations that follow,
+     *        instead of all at once on the put that triggers it
+     * @param hashSeed a seed for the secondary hash that mixes the bits of every
+     *        key's hash code before it picks a bucket, or 0 to use hash codes
+     *        as they are
      */
     @SuppressWarnings("unchecked")
-    public HashtableMap(int capacity) {
-        table = (LinkedList<Pair>[]) new LinkedList[capacity];
+    public HashtableMap(int capacity, boolean incrementalResize, int hashSeed) {
+        this.incrementalResize = incrementalResize;
+        this.hashSeed = hashSeed;
+        table = (Collection<Pair>[]) new Collection[capacity];
         for (int i = 0; i < capacity; i++) {
             table[i] = new LinkedList<>();
         }
     }
 
+    /**
+     * Constructor to initialize the hashtable with a given capacity.
+     * @param capacity the initial size of the hashtable
+     * @param incrementalResize whether the table should grow incrementally,
+     *        spreading the rehashing work over the operations that follow,
+     *        instead of all at once on the put that triggers it
+     */
+    public HashtableMap(int capacity, boolean incrementalResize) {
+        this(capacity, incrementalResize, 0);
+    }
+
+    /**
+     * Constructor to initialize the hashtable with a given capacity.
+     * @param capacity the initial size of the hashtable
+     */
+    public HashtableMap(int capacity) {
+        this(capacity, false);
+    }
+
     /**
      * Default constructor to initialize the hashtable with a default capacity of 64.
      */
@@ -51,6 +186,116 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
         this(64);
     }
 
+    /**
+     * Computes the hash of a key. With a non-zero seed, the key's hash code is
+     * combined with the seed and its bits are mixed (murmur3 finalizer), so
+     * which keys share a bucket cannot be predicted without knowing the seed.
+     * @param key the key to hash
+     * @return the hash of key
+     */
+    protected int hash(Object key) {
+        int h = key.hashCode();
+        if (hashSeed == 0) return h;
+        h ^= hashSeed;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Computes the index of the bucket that a key belongs to.
+     * @param key the key to locate
+     * @param capacity the number of buckets in the table
+     * @return the bucket index for key
+     */
+    protected int indexFor(Object key, int capacity) {
+        return (hash(key) & 0x7fffffff) % capacity;
+    }
+
+    /**
+     * Retrieves a bucket of a table, creating it first if it does not exist.
+     * Tables created by an incremental resize start out without buckets.
+     * @param tab the table that holds the bucket
+     * @param index the index of the bucket
+     * @return the bucket at that index
+     */
+    private Collection<Pair> bucket(Collection<Pair>[] tab, int index) {
+        if (tab[index] == null) tab[index] = new LinkedList<>();
+        return tab[index];
+    }
+
+    /**
+     * Adds a pair to a bucket, converting that bucket into a TreeBin when it
+     * grows past TREEIFY_THRESHOLD, or back into a list when the pair's key
+     * cannot be ordered against the keys already in the bin.
+     * @param tab the table that holds the bucket
+     * @param index the index of the bucket
+     * @param pair the pair to add
+     */
+    @SuppressWarnings("unchecked")
+    private void addToBucket(Collection<Pair>[] tab, int index, Pair pair) {
+        Collection<Pair> chaining = bucket(tab, index);
+        if (chaining instanceof HashtableMap.TreeBin && !((TreeBin) chaining).accepts(pair.key))
+            chaining = tab[index] = new LinkedList<>(chaining);
+        chaining.add(pair);
+        if (chaining instanceof LinkedList && chaining.size() > TREEIFY_THRESHOLD) {
+            Class<?> keyClass = pair.key.getClass();
+            if (!(pair.key instanceof Comparable)) return;
+            for (Pair other : chaining)
+                if (other.key.getClass() != keyClass) return;
+            TreeBin bin = new TreeBin(keyClass);
+            bin.addAll(chaining);
+            tab[index] = bin;
+        }
+    }
+
+    /**
+     * Finds the pair that stores a key in one bucket.
+     * @param chaining the bucket to scan, which may be null
+     * @param key the key to look for
+     * @return the pair holding key, or null if it is not in that bucket
+     */
+    @SuppressWarnings("unchecked")
+    private Pair findIn(Collection<Pair> chaining, KeyType key) {
+        if (chaining == null) return null;
+        if (chaining instanceof HashtableMap.TreeBin && ((TreeBin) chaining).accepts(key))
+            return ((TreeBin) chaining).tree.get(key);
+        for (Pair pair : chaining) {
+            if (pair.key.equals(key)) return pair;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the pair that stores a key, hashing and scanning its bucket once.
+     * While a migration is under way, the key's bucket in the old table is
+     * checked as well.
+     * @param key the key to look for
+     * @return the pair holding key, or null if it is not stored
+     */
+    protected Pair findPair(KeyType key) {
+        if (oldTable != null && activeVisits == 0) rehashStep();
+        Pair pair = findIn(table[indexFor(key, table.length)], key);
+        if (pair == null && oldTable != null)
+            pair = findIn(oldTable[indexFor(key, oldTable.length)], key);
+        return pair;
+    }
+
+    /**
+     * Adds a pair to its bucket, without checking for an existing key, and
+     * resizes the table once the load factor reaches 0.8.
+     * @param pair the pair to add
+     */
+    private void addPair(Pair pair) {
+        addToBucket(table, indexFor(pair.key, table.length), pair);
+        size++;
+        keySnapshot = null;
+        double load_factor = (double) size / getCapacity();
+        if (load_factor >= 0.8) resize();
+    }
+
     /**
      * Adds a key-value pair to the hashtable.
      * @param key the key of the pair
@@ -60,33 +305,69 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      */
     public void put(KeyType key, ValueType value) throws IllegalArgumentException {
         if (key == null) throw new NullPointerException("The key is null");
-        if (containsKey(key)) throw new IllegalArgumentException("The key already mapped");
-
-        Pair newPair = new Pair(key, value);
-        int index = Math.abs(key.hashCode()) % getCapacity();
-        table[index].add(newPair);
-
-        double load_factor = (double) getSize() / getCapacity();
-        if (load_factor >= 0.8) resize();
+        if (findPair(key) != null) throw new IllegalArgumentException("The key already mapped");
+        addPair(new Pair(key, value));
     }
 
     /**
-     * Resizes the hashtable by doubling its capacity and rehashing all key-value pairs.
+     * Resizes the hashtable by doubling its capacity. Without incremental
+     * resizing all key-value pairs are rehashed right away; otherwise the
+     * current table becomes the old table of a new migration.
      */
+    @SuppressWarnings("unchecked")
     private void resize() {
-        LinkedList<Pair>[] oldTable = table;
-        table = (LinkedList<Pair>[]) new LinkedList[oldTable.length * 2];
+        if (incrementalResize) {
+            // a migration that is still running when the new table fills up is finished first
+            while (oldTable != null) rehashStep();
+            oldTable = table;
+            migrateIndex = 0;
+            table = (Collection<Pair>[]) new Collection[oldTable.length * 2];
+            return;
+        }
+        Collection<Pair>[] oldTable = table;
+        table = (Collection<Pair>[]) new Collection[oldTable.length * 2];
         for (int i = 0; i < table.length; ++i) {
             table[i] = new LinkedList<>();
         }
-        for (LinkedList<Pair> chaining : oldTable) {
+        for (Collection<Pair> chaining : oldTable) {
             for (Pair pair : chaining) {
-                int newIndex = Math.abs(pair.key.hashCode()) % table.length;
-                table[newIndex].add(pair);
+                int newIndex = indexFor(pair.key, table.length);
+                addToBucket(table, newIndex, pair);
             }
         }
     }
 
+    /**
+     * Moves up to REHASH_STEP non-empty buckets of the old table into the new
+     * one, visiting at most ten times as many empty buckets, so that the work
+     * done by a single operation stays bounded. Ends the migration once the
+     * whole old table has been moved.
+     */
+    private void rehashStep() {
+        int moved = 0;
+        int emptyVisits = REHASH_STEP * 10;
+        while (migrateIndex < oldTable.length && moved < REHASH_STEP) {
+            Collection<Pair> chaining = oldTable[migrateIndex];
+            oldTable[migrateIndex++] = null;
+            if (chaining == null || chaining.isEmpty()) {
+                if (--emptyVisits == 0) break;
+                continue;
+            }
+            for (Pair pair : chaining)
+                addToBucket(table, indexFor(pair.key, table.length), pair);
+            moved++;
+        }
+        if (migrateIndex == oldTable.length) oldTable = null;
+    }
+
+    /**
+     * Checks whether a migration from a smaller table is under way.
+     * @return true if the old table still holds buckets that are not yet moved
+     */
+    public boolean isRehashing() {
+        return oldTable != null;
+    }
+
     /**
      * Checks if the hashtable contains a given key.
      * @param key the key to check
@@ -94,13 +375,7 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      */
     public boolean containsKey(KeyType key) {
         if (key == null) return false;
-
-        int index = Math.abs(key.hashCode()) % getCapacity();
-        for (Pair pairs : table[index]) {
-            if (pairs.key.equals(key)) return true;
-        }
-
-        return false;
+        return findPair(key) != null;
     }
 
     /**
@@ -110,15 +385,99 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      * @throws NoSuchElementException if the key does not exist
      */
     public ValueType get(KeyType key) throws NoSuchElementException {
-        if (!containsKey(key)) throw new NoSuchElementException("The key is not stored");
+        Pair pair = key == null ? null : findPair(key);
+        if (pair == null) throw new NoSuchElementException("The key is not stored");
+        return pair.value;
+    }
 
-        int index = Math.abs(key.hashCode()) % getCapacity();
-        for (Pair pairs : table[index]) {
-            if (pairs.key.equals(key))
-                return pairs.value;
-        }
+    /**
+     * Retrieves the value associated with a given key, or null if the key does
+     * not exist.
+     * @param key the key to retrieve
+     * @return the value associated with the key, or null
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType getOrNull(KeyType key) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Pair pair = findPair(key);
+        return pair == null ? null : pair.value;
+    }
+
+    /**
+     * Adds a key-value pair to the hashtable if the key does not exist yet.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @return the value the key already mapped to, or null if the pair was added
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType putIfAbsent(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Pair pair = findPair(key);
+        if (pair != null) return pair.value;
+        addPair(new Pair(key, value));
+        return null;
+    }
+
+    /**
+     * Retrieves the value associated with a given key, adding a pair with the
+     * computed value first if the key does not exist yet.
+     * @param key the key to retrieve
+     * @param mappingFunction computes the value for a missing key
+     * @return the value associated with the key after this call
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Pair pair = findPair(key);
+        if (pair != null) return pair.value;
+        ValueType value = mappingFunction.apply(key);
+        addPair(new Pair(key, value));
+        return value;
+    }
 
-        throw new NoSuchElementException("The key is not stored");
+    /**
+     * Replaces the value of a key that already exists.
+     * @param key the key of the pair
+     * @param value the new value of the pair
+     * @return the previous value of the key, or null if the key does not exist
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType replace(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        Pair pair = findPair(key);
+        if (pair == null) return null;
+        ValueType oldValue = pair.value;
+        pair.value = value;
+        return oldValue;
+    }
+
+    /**
+     * Removes a key's pair from one bucket, converting a TreeBin back into a
+     * list once it shrinks to UNTREEIFY_THRESHOLD pairs.
+     * @param tab the table that holds the bucket
+     * @param index the index of the bucket
+     * @param key the key to remove
+     * @return the removed pair, or null if key is not in that bucket
+     */
+    @SuppressWarnings("unchecked")
+    private Pair removeFrom(Collection<Pair>[] tab, int index, KeyType key) {
+        Collection<Pair> chaining = tab[index];
+        if (chaining == null) return null;
+        if (chaining instanceof HashtableMap.TreeBin && ((TreeBin) chaining).accepts(key)) {
+            Pair pair = ((TreeBin) chaining).tree.remove(key);
+            if (chaining.size() <= UNTREEIFY_THRESHOLD) tab[index] = new LinkedList<>(chaining);
+            return pair;
+        }
+        Iterator<Pair> pairs = chaining.iterator();
+        while (pairs.hasNext()) {
+            Pair pair = pairs.next();
+            if (pair.key.equals(key)) {
+                pairs.remove();
+                return pair;
+            }
+        }
+        return null;
     }
 
     /**
@@ -128,26 +487,28 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      * @throws NoSuchElementException if the key does not exist
      */
     public ValueType remove(KeyType key) throws NoSuchElementException {
-        if (!containsKey(key)) throw new NoSuchElementException("The key is not stored");
-
-        int index = Math.abs(key.hashCode()) % getCapacity();
-        for (int i = 0; i < table[index].size(); ++i) {
-            if (table[index].get(i).key.equals(key)) {
-                ValueType removedValue = table[index].get(i).value;
-                table[index].remove(i);
-                return removedValue;
-            }
-        }
-        throw new NoSuchElementException("The key is not stored");
+        if (key == null) throw new NoSuchElementException("The key is not stored");
+
+        if (oldTable != null) rehashStep();
+        Pair pair = removeFrom(table, indexFor(key, table.length), key);
+        if (pair == null && oldTable != null)
+            pair = removeFrom(oldTable, indexFor(key, oldTable.length), key);
+        if (pair == null) throw new NoSuchElementException("The key is not stored");
+        size--;
+        keySnapshot = null;
+        return pair.value;
     }
 
     /**
      * Clears all key-value pairs from the hashtable.
      */
     public void clear() {
-        for (LinkedList<Pair> pairs : table) {
-            pairs.clear();
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) table[i] = new LinkedList<>();
         }
+        oldTable = null;
+        size = 0;
+        keySnapshot = null;
     }
 
     /**
@@ -155,15 +516,12 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      * @return the number of pairs
      */
     public int getSize() {
-        int size = 0;
-        for (LinkedList<Pair> chaining : table) {
-            size += chaining.size();
-        }
         return size;
     }
 
     /**
-     * Retrieves the capacity of the hashtable.
+     * Retrieves the capacity of the hashtable. While a migration is under way
+     * this is the capacity of the new table.
      * @return the capacity
      */
     public int getCapacity() {
@@ -176,11 +534,72 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
      */
     public LinkedList<KeyType> getKeys() {
         LinkedList<KeyType> keys = new LinkedList<>();
-        for (LinkedList<Pair> chaining : table) {
+        forEachKey(keys::add);
+        return keys;
+    }
+
+    /**
+     * Retrieves an unmodifiable list of all keys, which is reused until a key
+     * is added or removed.
+     * @return an unmodifiable list of the keys in the hashtable
+     */
+    public List<KeyType> getKeySnapshot() {
+        if (keySnapshot == null) {
+            ArrayList<KeyType> keys = new ArrayList<>(size);
+            forEachKey(keys::add);
+            keySnapshot = Collections.unmodifiableList(keys);
+        }
+        return keySnapshot;
+    }
+
+    /**
+     * Retrieves an iterator over all keys stored in the hashtable. Any
+     * migration under way is finished first, so that lookups made while
+     * iterating cannot move buckets past the iterator.
+     * @return an iterator over the keys in the hashtable
+     */
+    public Iterator<KeyType> keyIterator() {
+        while (oldTable != null) rehashStep();
+        return new KeyIterator();
+    }
+
+    /**
+     * Passes every key in the hashtable to a visitor. Incremental rehashing
+     * is paused while the visitor runs, so lookups made by the visitor do not
+     * move pairs between the tables being walked.
+     * @param visitor the action to perform on each key
+     */
+    public void forEachKey(Consumer<? super KeyType> visitor) {
+        forEachEntry((key, value) -> visitor.accept(key));
+    }
+
+    /**
+     * Passes every key-value pair in the hashtable to a visitor. Incremental
+     * rehashing is paused while the visitor runs.
+     * @param visitor the action to perform on each key and its value
+     */
+    public void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> visitor) {
+        activeVisits++;
+        try {
+            visitEntries(table, visitor);
+            if (oldTable != null) visitEntries(oldTable, visitor);
+        } finally {
+            activeVisits--;
+        }
+    }
+
+    /**
+     * Passes every pair of a table to a visitor.
+     * @param tab the table to walk
+     * @param visitor the action to perform on each key and its value
+     */
+    private void visitEntries(Collection<Pair>[] tab,
+            BiConsumer<? super KeyType, ? super ValueType> visitor) {
+        for (Collection<Pair> chaining : tab) {
+            if (chaining == null) continue;
             for (Pair pair : chaining)
-                keys.add(pair.key);
+                visitor.accept(pair.key, pair.value);
         }
-        return keys;
     }
 
 
@@ -238,4 +657,95 @@ public class HashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueTy
         map.remove("A");
         assertEquals(1, map.getSize());
     }
+
+    /**
+     * Tests the single-probe operations getOrNull, putIfAbsent, computeIfAbsent
+     * and replace.
+     */
+    @Test
+    public void testSingleProbeOperations() {
+        HashtableMap<String, Integer> map = new HashtableMap<>(8);
+        assertNull(map.getOrNull("A"));
+        assertNull(map.putIfAbsent("A", 1));
+        assertEquals(1, map.putIfAbsent("A", 2));
+        assertEquals(3, map.computeIfAbsent("B", key -> 3));
+        assertEquals(3, map.computeIfAbsent("B", key -> 4));
+        assertEquals(3, map.replace("B", 5));
+        assertNull(map.replace("C", 6));
+        assertFalse(map.containsKey("C"));
+        assertEquals(5, map.getOrNull("B"));
+        assertEquals(2, map.getSize());
+    }
+
+    /**
+     * Tests that an incremental resize keeps every key reachable while the
+     * old table is migrated, and eventually finishes.
+     */
+    @Test
+    public void testIncrementalResize() {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>(8, true);
+        for (int i = 0; i < 7; i++) map.put(i, i);
+        assertEquals(16, map.getCapacity());
+        assertTrue(map.isRehashing());
+        for (int i = 0; i < 7; i++) assertEquals(i, map.get(i));
+        assertEquals(3, map.remove(3));
+        assertThrows(IllegalArgumentException.class, () -> map.put(4, 4));
+        for (int i = 7; i < 1000; i++) map.put(i, i);
+        assertEquals(999, map.getSize());
+        assertEquals(999, map.getKeys().size());
+        for (int i = 0; i < 1000; i++) assertEquals(i != 3, map.containsKey(i));
+    }
+
+    /**
+     * Tests that keys sharing one hash code are moved into a TreeBin, stay
+     * reachable, and go back into a list once most of them are removed.
+     */
+    @Test
+    public void testTreeifiedBucket() {
+        HashtableMap<String, Integer> map = new HashtableMap<>(64, false, 0x5eed);
+        // every string built from the blocks "Aa" and "BB" has the same hash code
+        String[] keys = new String[32];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 5; bit++) key.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+            keys[i] = key.toString();
+            map.put(keys[i], i);
+        }
+        int index = map.indexFor(keys[0], map.getCapacity());
+        assertTrue(map.table[index] instanceof HashtableMap.TreeBin);
+        for (int i = 0; i < keys.length; i++) assertEquals(i, map.get(keys[i]));
+        for (int i = 0; i < 28; i++) assertEquals(i, map.remove(keys[i]));
+        assertTrue(map.table[index] instanceof LinkedList);
+        for (int i = 28; i < keys.length; i++) assertEquals(i, map.get(keys[i]));
+        assertEquals(4, map.getSize());
+    }
+
+    /**
+     * Tests the key iterator, the forEach visitors and the cached key snapshot.
+     */
+    @Test
+    public void testKeyTraversal() {
+        HashtableMap<Integer, Integer> map = new HashtableMap<>(8, true);
+        for (int i = 0; i < 7; i++) map.put(i, i * 10);
+        int[] visits = new int[2];
+        map.forEachEntry((key, value) -> {
+            assertEquals(key * 10, map.get(key)); // lookups do not migrate buckets mid-walk
+            visits[0]++;
+        });
+        assertNotNull(map.oldTable); // the migration is still under way
+        Iterator<Integer> keys = map.keyIterator();
+        while (keys.hasNext()) {
+            Integer key = keys.next();
+            assertEquals(key * 10, map.get(key)); // lookups do not invalidate the iterator
+            visits[1]++;
+        }
+        assertEquals(7, visits[0]);
+        assertEquals(7, visits[1]);
+        List<Integer> snapshot = map.getKeySnapshot();
+        assertSame(snapshot, map.getKeySnapshot());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(8));
+        map.remove(0);
+        assertNotSame(snapshot, map.getKeySnapshot());
+        assertEquals(6, map.getKeySnapshot().size());
+    }
 }
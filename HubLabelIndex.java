@@ -0,0 +1,516 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Hub labeling (2-hop cover) index for distance queries on a graph that
+ * rarely changes. Every node gets a forward label, the hubs it reaches and
+ * their costs, and a backward label, the hubs that reach it and their costs,
+ * chosen so that every shortest path passes through a hub in both the forward
+ * label of its start and the backward label of its end. A distance query is
+ * then a merge-join of two short sorted arrays, with no search at all.
+ *
+ * Labels are computed by pruned landmark labeling: nodes are taken as hubs in
+ * decreasing order of their ContractionHierarchy rank, so that the nodes most
+ * shortest paths pass through come first, and the searches from each hub stop
+ * at any node whose cost the labels found so far already answer. A parallel
+ * build searches from a batch of hubs at once, pruning only with the labels
+ * of earlier batches, then adds the entries found in rank order, dropping
+ * those the hubs before them in the same batch already cover.
+ */
+public class HubLabelIndex<NodeType> {
+
+    protected final CompressedGraph<NodeType> graph;
+    protected final boolean withPaths;
+    protected final int[] order; // node id of each hub, by rank
+
+    // forward labels: hub ranks in increasing order and costs to them, by node id
+    protected final int[] forwardOffsets;
+    protected final int[] forwardHubs;
+    protected final double[] forwardCosts;
+    protected final int[] forwardNext; // next node toward the hub, if withPaths
+
+    // backward labels: hub ranks in increasing order and costs from them
+    protected final int[] backwardOffsets;
+    protected final int[] backwardHubs;
+    protected final double[] backwardCosts;
+    protected final int[] backwardPrevious; // previous node from the hub, if withPaths
+
+    /**
+     * Builds a new HubLabelIndex of a graph that supports distance queries
+     * only, on a single core.
+     *
+     * @param graph the graph to index; later changes to it are not seen
+     */
+    public HubLabelIndex(BaseGraph<NodeType, ?> graph) {
+        this(graph, false, false);
+    }
+
+    /**
+     * Builds a new HubLabelIndex of a graph.
+     *
+     * @param graph the graph to index; later changes to it are not seen
+     * @param withPaths true to also store the next node of every label entry,
+     *        so that shortestPathData can be answered
+     * @param parallel true to search from batches of hubs on every core; the
+     *        labels are the same either way
+     */
+    public HubLabelIndex(BaseGraph<NodeType, ?> graph, boolean withPaths, boolean parallel) {
+        this.graph = graph.snapshot();
+        this.withPaths = withPaths;
+        Builder builder = new Builder(this.graph, withPaths, parallel);
+        builder.run();
+        order = builder.order;
+        int n = this.graph.getNodeIdBound();
+        forwardOffsets = new int[n + 1];
+        backwardOffsets = new int[n + 1];
+        for (int id = 0; id < n; id++) {
+            forwardOffsets[id + 1] = forwardOffsets[id] + builder.forward[id].size;
+            backwardOffsets[id + 1] = backwardOffsets[id] + builder.backward[id].size;
+        }
+        forwardHubs = new int[forwardOffsets[n]];
+        forwardCosts = new double[forwardOffsets[n]];
+        forwardNext = withPaths ? new int[forwardOffsets[n]] : null;
+        backwardHubs = new int[backwardOffsets[n]];
+        backwardCosts = new double[backwardOffsets[n]];
+        backwardPrevious = withPaths ? new int[backwardOffsets[n]] : null;
+        for (int id = 0; id < n; id++) {
+            builder.forward[id].copyTo(forwardHubs, forwardCosts, forwardNext, forwardOffsets[id]);
+            builder.backward[id].copyTo(backwardHubs, backwardCosts, backwardPrevious,
+                    backwardOffsets[id]);
+        }
+    }
+
+    /**
+     * Creates a new HubLabelIndex of an empty graph
+     */
+    public HubLabelIndex() {
+        this(new DijkstraGraph<NodeType, Integer>(), true, false);
+    }
+
+    // Growable label of one node, used while building
+    protected static final class Label {
+        public int[] hubs = new int[2];
+        public double[] costs = new double[2];
+        public int[] links = new int[2];
+        public int size = 0;
+
+        public void add(int hub, double cost, int link) {
+            if (size == hubs.length) {
+                hubs = Arrays.copyOf(hubs, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                links = Arrays.copyOf(links, size * 2);
+            }
+            hubs[size] = hub;
+            costs[size] = cost;
+            links[size++] = link;
+        }
+
+        public void copyTo(int[] hubs, double[] costs, int[] links, int offset) {
+            System.arraycopy(this.hubs, 0, hubs, offset, size);
+            System.arraycopy(this.costs, 0, costs, offset, size);
+            if (links != null)
+                System.arraycopy(this.links, 0, links, offset, size);
+        }
+    }
+
+    // Runs the pruned searches from every hub in rank order
+    protected static final class Builder {
+        // hubs searched from at once by a parallel build; batches start with one
+        // hub and double up to this size, since the first hubs prune the most
+        protected static final int MAX_BATCH = 256;
+
+        protected final CompressedGraph<?> graph;
+        protected final boolean withPaths;
+        protected final boolean parallel;
+        protected final int[] order;
+        protected final Label[] forward;
+        protected final Label[] backward;
+        protected final ThreadLocal<PrunedSearch> searches;
+
+        public Builder(CompressedGraph<?> graph, boolean withPaths, boolean parallel) {
+            this.graph = graph;
+            this.withPaths = withPaths;
+            this.parallel = parallel;
+            int n = graph.getNodeIdBound();
+            forward = new Label[n];
+            backward = new Label[n];
+            for (int id = 0; id < n; id++) {
+                forward[id] = new Label();
+                backward[id] = new Label();
+            }
+            order = hierarchyOrder(graph, parallel);
+            searches = ThreadLocal.withInitial(() -> new PrunedSearch(n));
+        }
+
+        // the ids of every node, highest ContractionHierarchy rank first
+        protected static int[] hierarchyOrder(CompressedGraph<?> graph, boolean parallel) {
+            ContractionHierarchy.Contractor contractor =
+                    new ContractionHierarchy.Contractor(graph, parallel);
+            contractor.run();
+            int n = graph.getNodeIdBound();
+            int[] byRank = new int[n];
+            int count = 0;
+            for (int id = 0; id < n; id++)
+                if (graph.nodeOf(id) != null) {
+                    byRank[contractor.rank[id]] = id;
+                    count++;
+                }
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++)
+                order[i] = byRank[count - 1 - i];
+            return order;
+        }
+
+        public void run() {
+            Label[] found = {new Label(), new Label()};
+            int batch = 1;
+            for (int first = 0; first < order.length; first += batch) {
+                if (!parallel) {
+                    // with every earlier hub in the labels, nothing needs fixing up
+                    PrunedSearch search = searches.get();
+                    int hub = order[first];
+                    forward[hub].add(first, 0, hub);
+                    backward[hub].add(first, 0, hub);
+                    search.run(this, hub, true, found[0]);
+                    commit(first, found[0], backward, forward[hub], false);
+                    search.run(this, hub, false, found[1]);
+                    commit(first, found[1], forward, backward[hub], false);
+                    continue;
+                }
+                batch = Math.min(first == 0 ? 1 : batch * 2, MAX_BATCH);
+                int size = Math.min(batch, order.length - first);
+                Label[] batchFound = new Label[2 * size];
+                int start = first;
+                IntStream.range(0, size).parallel().forEach(i -> {
+                    PrunedSearch search = searches.get();
+                    batchFound[2 * i] = new Label();
+                    batchFound[2 * i + 1] = new Label();
+                    search.run(this, order[start + i], true, batchFound[2 * i]);
+                    search.run(this, order[start + i], false, batchFound[2 * i + 1]);
+                });
+                for (int i = 0; i < size; i++) {
+                    int hub = order[first + i];
+                    forward[hub].add(first + i, 0, hub);
+                    backward[hub].add(first + i, 0, hub);
+                    commit(first + i, batchFound[2 * i], backward, forward[hub], true);
+                    commit(first + i, batchFound[2 * i + 1], forward, backward[hub], true);
+                }
+            }
+        }
+
+        /**
+         * Adds the entries one search found to the labels of the nodes it
+         * reached, skipping those the labels already cover when the search
+         * ran without the hubs just before it in the batch.
+         */
+        protected void commit(int rank, Label found, Label[] targets, Label own, boolean check) {
+            for (int i = 0; i < found.size; i++) {
+                Label target = targets[found.hubs[i]];
+                if (!check || !covers(own, target, found.costs[i]))
+                    target.add(rank, found.costs[i], found.links[i]);
+            }
+            found.size = 0;
+        }
+
+        // whether two labels share a hub at no more than a cost, by merge-join
+        protected static boolean covers(Label own, Label target, double cost) {
+            int i = 0;
+            int j = 0;
+            while (i < own.size && j < target.size) {
+                int a = own.hubs[i];
+                int b = target.hubs[j];
+                if (a < b)
+                    i++;
+                else if (a > b)
+                    j++;
+                else if (own.costs[i++] + target.costs[j++] <= cost)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    // State of the pruned searches in one direction, reused for every hub by
+    // one thread
+    protected static final class PrunedSearch {
+        protected final double[] costs;
+        protected final int[] links;
+        protected final int[] touched;
+        protected int touchedCount = 0;
+        protected final double[] hubCosts; // cost between the hub and each hub rank
+        protected final IndexedMinHeap heap;
+
+        public PrunedSearch(int n) {
+            costs = new double[n];
+            Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            hubCosts = new double[n];
+            Arrays.fill(hubCosts, Double.POSITIVE_INFINITY);
+            links = new int[n];
+            touched = new int[n];
+            heap = new IndexedMinHeap(n);
+        }
+
+        /**
+         * Searches from a hub, forward to find backward label entries, or
+         * backward to find forward label entries, skipping every node the
+         * labels already answer. The labels are only read; each entry found is
+         * added to found as its node id, cost and link.
+         */
+        public void run(Builder builder, int hub, boolean isForward, Label found) {
+            CompressedGraph<?> graph = builder.graph;
+            Label own = isForward ? builder.forward[hub] : builder.backward[hub];
+            Label[] targets = isForward ? builder.backward : builder.forward;
+            int[] offsets = isForward ? graph.offsets : graph.reverseOffsets;
+            int[] ends = isForward ? graph.targets : graph.sources;
+            double[] weights = isForward ? graph.weights : graph.reverseWeights;
+            for (int i = 0; i < own.size; i++)
+                hubCosts[own.hubs[i]] = own.costs[i];
+
+            costs[hub] = 0;
+            touched[touchedCount++] = hub;
+            heap.insertOrDecrease(hub, 0);
+            while (!heap.isEmpty()) {
+                int id = heap.poll();
+                double cost = costs[id];
+                if (id != hub) {
+                    Label label = targets[id];
+                    boolean covered = false;
+                    for (int i = 0; i < label.size && !covered; i++)
+                        covered = hubCosts[label.hubs[i]] + label.costs[i] <= cost;
+                    if (covered)
+                        continue;
+                    found.add(id, cost, links[id]);
+                }
+                for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                    int next = ends[e];
+                    double nextCost = cost + weights[e];
+                    if (nextCost >= costs[next])
+                        continue;
+                    if (costs[next] == Double.POSITIVE_INFINITY)
+                        touched[touchedCount++] = next;
+                    costs[next] = nextCost;
+                    links[next] = id;
+                    heap.insertOrDecrease(next, nextCost);
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++)
+                costs[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            for (int i = 0; i < own.size; i++)
+                hubCosts[own.hubs[i]] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        int from = graph.idOf(start);
+        int to = graph.idOf(end);
+        if (from < 0 || to < 0)
+            throw new NoSuchElementException("Start or end node not found.");
+        double cost = distance(from, to);
+        if (cost == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("Path does not exist.");
+        return cost;
+    }
+
+    /**
+     * Returns the cost of the shortest path between two node ids, by a
+     * merge-join of the forward label of one and the backward label of the other.
+     *
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @return the cost of the shortest path, or positive infinity if none exists
+     */
+    public double distance(int from, int to) {
+        int i = forwardOffsets[from];
+        int j = backwardOffsets[to];
+        int iEnd = forwardOffsets[from + 1];
+        int jEnd = backwardOffsets[to + 1];
+        double best = Double.POSITIVE_INFINITY;
+        while (i < iEnd && j < jEnd) {
+            int a = forwardHubs[i];
+            int b = backwardHubs[j];
+            if (a < b)
+                i++;
+            else if (a > b)
+                j++;
+            else
+                best = Math.min(best, forwardCosts[i++] + backwardCosts[j++]);
+        }
+        return best;
+    }
+
+    // the rank of the hub on the best path between two node ids, or -1
+    protected int meet(int from, int to) {
+        int i = forwardOffsets[from];
+        int j = backwardOffsets[to];
+        int iEnd = forwardOffsets[from + 1];
+        int jEnd = backwardOffsets[to + 1];
+        double best = Double.POSITIVE_INFINITY;
+        int bestHub = -1;
+        while (i < iEnd && j < jEnd) {
+            int a = forwardHubs[i];
+            int b = backwardHubs[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                double cost = forwardCosts[i++] + backwardCosts[j++];
+                if (cost < best) {
+                    best = cost;
+                    bestHub = a;
+                }
+            }
+        }
+        return bestHub;
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path from
+     * start to end. Only available if the index was built with paths.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node cannot be found, or there
+     *         is no directed path from start to end
+     * @throws IllegalStateException if the index was built without paths
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        if (!withPaths)
+            throw new IllegalStateException("Index was built without paths.");
+        int from = graph.idOf(start);
+        int to = graph.idOf(end);
+        if (from < 0 || to < 0)
+            throw new NoSuchElementException("Start or end node not found.");
+        int rank = meet(from, to);
+        if (rank < 0)
+            throw new NoSuchElementException("Path does not exist.");
+        int hub = order[rank];
+        LinkedList<NodeType> path = new LinkedList<>();
+        // from start to the hub, following each forward entry's next node
+        for (int id = from; id != hub; id = forwardNext[find(forwardOffsets, forwardHubs, id, rank)])
+            path.add(graph.nodeOf(id));
+        // from end back to the hub, following each backward entry's previous node
+        LinkedList<NodeType> tail = new LinkedList<>();
+        for (int id = to; id != hub;
+                id = backwardPrevious[find(backwardOffsets, backwardHubs, id, rank)])
+            tail.addFirst(graph.nodeOf(id));
+        path.add(graph.nodeOf(hub));
+        path.addAll(tail);
+        return path;
+    }
+
+    // the index of a hub in a node's sorted label, by binary search
+    private static int find(int[] offsets, int[] hubs, int id, int rank) {
+        int index = Arrays.binarySearch(hubs, offsets[id], offsets[id + 1], rank);
+        if (index < 0)
+            throw new IllegalStateException("Label of " + id + " is missing hub " + rank);
+        return index;
+    }
+
+    /**
+     * Return the total number of entries in all forward and backward labels.
+     *
+     * @return the number of label entries
+     */
+    public long getLabelEntryCount() {
+        return (long) forwardHubs.length + backwardHubs.length;
+    }
+
+    /**
+     * Return the average number of entries in one label.
+     *
+     * @return label entries per node and direction
+     */
+    public double getAverageLabelSize() {
+        int nodes = graph.getNodeCount();
+        return nodes == 0 ? 0 : getLabelEntryCount() / (2.0 * nodes);
+    }
+
+    /**
+     * Return the size of the label arrays, which make up nearly all of the
+     * memory the index uses beyond its graph snapshot.
+     *
+     * @return the bytes taken by the label and offset arrays
+     */
+    public long getMemoryBytes() {
+        long entryBytes = Integer.BYTES + Double.BYTES + (withPaths ? Integer.BYTES : 0);
+        return getLabelEntryCount() * entryBytes
+                + (long) (forwardOffsets.length + backwardOffsets.length + order.length)
+                        * Integer.BYTES;
+    }
+
+    /**
+     * Tests that label queries and reconstructed paths match plain Dijkstra,
+     * for both the parallel and the sequential build, with ties between hubs
+     * from edges of weight zero
+     */
+    @Test
+    public void testLabelsMatchDijkstra() {
+        Random random = new Random(21);
+        DijkstraGraph<Integer, Integer> graph = DijkstraGraph.randomGraph(random, 120, 450, 20);
+        for (int i = 0; i < 10; i++)
+            graph.insertEdge(random.nextInt(120), random.nextInt(120), 0);
+        HubLabelIndex<Integer> parallel = new HubLabelIndex<>(graph, true, true);
+        HubLabelIndex<Integer> sequential = new HubLabelIndex<>(graph, false, false);
+        Assertions.assertEquals(parallel.getLabelEntryCount(), sequential.getLabelEntryCount());
+        Assertions.assertTrue(parallel.getAverageLabelSize() >= 1);
+        Assertions.assertTrue(parallel.getMemoryBytes() > sequential.getMemoryBytes());
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> sequential.shortestPathData(0, 1));
+
+        DijkstraGraph.assertMatchesReference(graph, random, 120, 100,
+                parallel::shortestPathCost, parallel::shortestPathData);
+    }
+
+    /**
+     * Tests that labels on a grid, where every node has about the same
+     * degree, stay small when hubs are ordered by hierarchy rank, and that the
+     * batched parallel build finds exactly the same labels
+     */
+    @Test
+    public void testGridLabelSize() {
+        Random random = new Random(5);
+        int side = 20;
+        DijkstraGraph<Integer, Integer> graph = new DijkstraGraph<>();
+        for (int i = 0; i < side * side; i++)
+            graph.insertNode(i);
+        for (int row = 0; row < side; row++)
+            for (int col = 0; col < side; col++) {
+                int node = row * side + col;
+                if (col + 1 < side) {
+                    graph.insertEdge(node, node + 1, 1 + random.nextInt(9));
+                    graph.insertEdge(node + 1, node, 1 + random.nextInt(9));
+                }
+                if (row + 1 < side) {
+                    graph.insertEdge(node, node + side, 1 + random.nextInt(9));
+                    graph.insertEdge(node + side, node, 1 + random.nextInt(9));
+                }
+            }
+        HubLabelIndex<Integer> sequential = new HubLabelIndex<>(graph);
+        HubLabelIndex<Integer> parallel = new HubLabelIndex<>(graph, true, true);
+        // ordering hubs by degree gives labels of over 100 entries here
+        Assertions.assertTrue(sequential.getAverageLabelSize() < side * side / 10.0);
+        Assertions.assertEquals(sequential.getLabelEntryCount(), parallel.getLabelEntryCount());
+        DijkstraGraph.assertMatchesReference(graph, random, side * side, 50,
+                parallel::shortestPathCost, parallel::shortestPathData);
+    }
+}
@@ -0,0 +1,249 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Indexed d-ary min-heap of dense int ids with primitive double keys. Each id
+ * is in the heap at most once, and its position is tracked, so the key of a
+ * queued id can be lowered in place (decrease-key) instead of queueing a
+ * second entry. A larger arity makes the heap shallower, which speeds up
+ * inserts and decrease-keys at the cost of more comparisons per removal.
+ */
+public class IndexedMinHeap {
+
+    protected final int arity;
+    protected int[] heap; // ids, in heap order
+    protected int[] positions; // position of each id in heap, or -1 if absent
+    protected double[] keys; // key of each id in the heap, by id
+    protected int size = 0;
+
+    /**
+     * Creates a new, empty heap for ids below a capacity.
+     *
+     * @param capacity a number greater than every id that will be inserted
+     * @param arity the number of children of each heap node, at least 2
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public IndexedMinHeap(int capacity, int arity) {
+        if (arity < 2)
+            throw new IllegalArgumentException("Heap arity must be at least 2.");
+        this.arity = arity;
+        heap = new int[Math.max(capacity, 1)];
+        positions = new int[heap.length];
+        keys = new double[heap.length];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Creates a new, empty 4-ary heap for ids below a capacity.
+     *
+     * @param capacity a number greater than every id that will be inserted
+     */
+    public IndexedMinHeap(int capacity) {
+        this(capacity, 4);
+    }
+
+    /**
+     * Creates a new, empty 4-ary heap with a small default capacity.
+     */
+    public IndexedMinHeap() {
+        this(16);
+    }
+
+    /**
+     * Grows the heap to accept ids below a new capacity.
+     *
+     * @param capacity a number greater than every id that will be inserted
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= positions.length)
+            return;
+        int oldLength = positions.length;
+        heap = Arrays.copyOf(heap, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        Arrays.fill(positions, oldLength, capacity, -1);
+    }
+
+    /**
+     * Return the number of ids in the heap.
+     *
+     * @return the number of ids in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     *
+     * @return true if no ids are in the heap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether an id is in the heap.
+     *
+     * @param id the id to look for
+     * @return true if the id is in the heap
+     */
+    public boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    /**
+     * Returns the key of an id in the heap.
+     *
+     * @param id an id in the heap
+     * @return the current key of that id
+     */
+    public double keyOf(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Adds an id with a key, or lowers the key of an id already in the heap.
+     *
+     * @param id the id to add or update
+     * @param key the new key of the id
+     * @return true if the id was added or its key lowered, or false if the id
+     *         was already in the heap with a key no greater than key
+     */
+    public boolean insertOrDecrease(int id, double key) {
+        int position = positions[id];
+        if (position < 0) {
+            position = size++;
+        } else if (key >= keys[id]) {
+            return false;
+        }
+        keys[id] = key;
+        siftUp(id, position);
+        return true;
+    }
+
+    /**
+     * Returns the id with the smallest key without removing it.
+     *
+     * @return the id with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return heap[0];
+    }
+
+    /**
+     * Removes the id with the smallest key.
+     *
+     * @return the id that had the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int poll() {
+        int min = peek();
+        positions[min] = -1;
+        int last = heap[--size];
+        if (size > 0)
+            siftDown(last, 0);
+        return min;
+    }
+
+    /**
+     * Removes every id from the heap, in time proportional to its size.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    // moves id up from a free position until its parent's key is no greater
+    protected void siftUp(int id, int position) {
+        double key = keys[id];
+        while (position > 0) {
+            int parent = (position - 1) / arity;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key)
+                break;
+            heap[position] = parentId;
+            positions[parentId] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    // moves id down from a free position until no child has a smaller key
+    protected void siftDown(int id, int position) {
+        double key = keys[id];
+        while (true) {
+            int first = position * arity + 1;
+            if (first >= size)
+                break;
+            int smallest = first;
+            int end = Math.min(first + arity, size);
+            for (int child = first + 1; child < end; child++)
+                if (keys[heap[child]] < keys[heap[smallest]])
+                    smallest = child;
+            if (keys[heap[smallest]] >= key)
+                break;
+            heap[position] = heap[smallest];
+            positions[heap[position]] = position;
+            position = smallest;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    /**
+     * Tests that ids come out in key order after random inserts and
+     * decrease-keys, for several arities
+     */
+    @Test
+    public void testHeapOrder() {
+        for (int arity = 2; arity <= 8; arity *= 2) {
+            Random random = new Random(arity);
+            IndexedMinHeap heap = new IndexedMinHeap(100, arity);
+            double[] expected = new double[100];
+            Arrays.fill(expected, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < 400; i++) {
+                int id = random.nextInt(100);
+                double key = random.nextInt(1000);
+                Assertions.assertEquals(key < expected[id], heap.insertOrDecrease(id, key));
+                expected[id] = Math.min(expected[id], key);
+            }
+            double previous = Double.NEGATIVE_INFINITY;
+            int polled = 0;
+            while (!heap.isEmpty()) {
+                int id = heap.poll();
+                Assertions.assertFalse(heap.contains(id));
+                Assertions.assertTrue(expected[id] >= previous);
+                previous = expected[id];
+                polled++;
+            }
+            Assertions.assertEquals(100 - countInfinite(expected), polled);
+        }
+        IndexedMinHeap heap = new IndexedMinHeap(2);
+        Assertions.assertThrows(NoSuchElementException.class, () -> heap.poll());
+        heap.insertOrDecrease(1, 5);
+        heap.ensureCapacity(10);
+        heap.insertOrDecrease(9, 3);
+        Assertions.assertEquals(9, heap.peek());
+        heap.clear();
+        Assertions.assertFalse(heap.contains(1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new IndexedMinHeap(4, 1));
+    }
+
+    private static int countInfinite(double[] values) {
+        int count = 0;
+        for (double value : values)
+            if (value == Double.POSITIVE_INFINITY)
+                count++;
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * DijkstraGraph specialization that stores every edge weight in a primitive
+ * int field, rather than as a boxed Integer. Weights passed to or returned
+ * from the GraphADT methods are boxed and unboxed at the call, but the
+ * primitive insertEdge and getEdgeWeight methods and the path searches never
+ * box a weight.
+ */
+public class IntWeightedGraph<NodeType> extends DijkstraGraph<NodeType, Integer> {
+
+    // Edge whose weight is kept in a primitive field, with data left null
+    protected class IntEdge extends Edge {
+        public int weight;
+
+        public IntEdge(int weight, Node pred, Node succ) {
+            super(null, pred, succ);
+            this.weight = weight;
+        }
+
+        public double weight() {
+            return weight;
+        }
+
+        public Integer getData() {
+            return weight;
+        }
+    }
+
+    /**
+     * Creates a new IntWeightedGraph with an OpenAddressingHashtableMap as its
+     * underlying storage
+     */
+    public IntWeightedGraph() {
+        super();
+    }
+
+    /**
+     * Insert a new directed edge with a primitive weight into the graph. Or if
+     * an edge between pred and succ already exists, update its weight.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, int weight) {
+        Node predNode = nodes.getOrNull(pred);
+        Node succNode = nodes.getOrNull(succ);
+        if (predNode == null || succNode == null)
+            return false;
+        IntEdge existingEdge = (IntEdge) predNode.findLeaving(succNode);
+        if (existingEdge != null) {
+            int oldWeight = existingEdge.weight;
+            existingEdge.weight = weight;
+            modCount++;
+            // weights are only boxed when there are listeners to receive them
+            if (!listeners.isEmpty())
+                fireEdgeUpdated(existingEdge, oldWeight);
+        } else {
+            IntEdge newEdge = new IntEdge(weight, predNode, succNode);
+            addEdge(newEdge);
+            modCount++;
+            fireEdgeInserted(newEdge);
+        }
+        return true;
+    }
+
+    /**
+     * Insert or update a directed edge, unboxing its weight.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, Integer weight) {
+        return insertEdge(pred, succ, weight.intValue());
+    }
+
+    /**
+     * Return the weight of a specific edge, without boxing it.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the non-negative weight of the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public int getEdgeWeight(NodeType pred, NodeType succ) {
+        return ((IntEdge) getEdgeHelper(pred, succ)).weight;
+    }
+
+    /**
+     * Tests that primitive weights are stored, updated and searched
+     */
+    @Test
+    public void testPrimitiveWeights() {
+        IntWeightedGraph<String> graph = new IntWeightedGraph<>();
+        graph.insertNode("A");
+        graph.insertNode("B");
+        graph.insertNode("C");
+        Assertions.assertTrue(graph.insertEdge("A", "B", 2));
+        Assertions.assertTrue(graph.insertEdge("B", "C", 3));
+        Assertions.assertTrue(graph.insertEdge("A", "C", Integer.valueOf(9)));
+        Assertions.assertEquals(2, graph.getEdgeWeight("A", "B"));
+        Assertions.assertEquals(Integer.valueOf(3), graph.getEdge("B", "C"));
+        Assertions.assertEquals(Arrays.asList("A", "B", "C"), graph.shortestPathData("A", "C"));
+        Assertions.assertEquals(5.0, graph.shortestPathCost("A", "C"));
+        Assertions.assertTrue(graph.removeEdge("B", "C"));
+        Assertions.assertEquals(9.0, graph.shortestPathCost("A", "C"));
+        Assertions.assertThrows(NoSuchElementException.class, () -> graph.getEdgeWeight("B", "C"));
+    }
+}
@@ -0,0 +1,246 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Landmark distances for ALT (A*, landmarks, triangle inequality) searches on a
+ * DijkstraGraph. For every landmark L the index stores the cost from L to
+ * every node and from every node to L, and by the triangle inequality
+ * d(L,t) - d(L,v) and d(v,L) - d(t,L) are lower bounds on the cost from v to t.
+ * Landmarks are chosen by farthest-point selection: each new landmark is the
+ * node whose nearest landmark is farthest away.
+ *
+ * The index listens to its graph. Removing edges or nodes, or raising a
+ * weight, only makes paths longer, so the stored bounds stay valid; inserting
+ * an edge or lowering a weight marks the index stale, and it is recomputed
+ * lazily before the next ALT search.
+ */
+public class LandmarkIndex<NodeType, EdgeType extends Number>
+        implements GraphListener<NodeType, EdgeType> {
+
+    public static final int DEFAULT_COUNT = 8;
+
+    protected final DijkstraGraph<NodeType, EdgeType> graph;
+    protected final int count;
+    protected int[] landmarks = new int[0]; // node id of each landmark
+    protected int bound = 0; // the node id bound the distances were computed for
+    protected double[] fromLandmark = new double[0]; // [landmark * bound + id]
+    protected double[] toLandmark = new double[0]; // [landmark * bound + id]
+    protected boolean stale = true;
+
+    /**
+     * Creates a new LandmarkIndex for a graph. Its distances are computed on
+     * the first refresh. The caller is responsible for registering the index as
+     * a listener of the graph, as DijkstraGraph.prepareLandmarks does.
+     *
+     * @param graph the graph to index
+     * @param count the number of landmarks to choose, at least 1
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public LandmarkIndex(DijkstraGraph<NodeType, EdgeType> graph, int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("At least one landmark is needed.");
+        this.graph = graph;
+        this.count = count;
+    }
+
+    /**
+     * Creates a new LandmarkIndex for an empty DijkstraGraph
+     */
+    public LandmarkIndex() {
+        this(new DijkstraGraph<>(), DEFAULT_COUNT);
+    }
+
+    /**
+     * Recomputes the landmark distances if a mutation may have made a stored
+     * bound too large. Landmarks that are still in the graph are kept, and any
+     * others are chosen again.
+     */
+    public void refresh() {
+        if (stale)
+            rebuild();
+    }
+
+    /**
+     * Checks whether the index must be recomputed before its next use.
+     *
+     * @return true if a mutation made the stored bounds unsafe
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Retrieves the data of the current landmark nodes.
+     *
+     * @return the landmarks, in the order they were chosen
+     */
+    public List<NodeType> getLandmarks() {
+        List<NodeType> data = new ArrayList<>(landmarks.length);
+        for (int id : landmarks)
+            data.add(graph.nodeOf(id));
+        return data;
+    }
+
+    /**
+     * Computes the distances from and to every landmark, choosing new
+     * landmarks to replace any that were removed from the graph.
+     */
+    protected void rebuild() {
+        bound = graph.getNodeIdBound();
+        int nodeCount = graph.getNodeCount();
+        int target = Math.min(count, nodeCount);
+        int[] chosen = new int[target];
+        int chosenCount = 0;
+        for (int id : landmarks)
+            if (chosenCount < target && graph.nodeOf(id) != null)
+                chosen[chosenCount++] = id;
+        fromLandmark = new double[target * bound];
+        toLandmark = new double[target * bound];
+        double[] costs = new double[bound];
+        for (int i = 0; i < chosenCount; i++)
+            computeDistances(i, chosen[i], costs);
+
+        // the distance from each node to its nearest landmark, in either direction
+        double[] nearest = new double[bound];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < chosenCount; i++)
+            updateNearest(i, nearest);
+        while (chosenCount < target) {
+            int next = farthestNode(nearest, chosen, chosenCount);
+            chosen[chosenCount] = next;
+            computeDistances(chosenCount, next, costs);
+            updateNearest(chosenCount, nearest);
+            chosenCount++;
+        }
+        landmarks = chosen;
+        stale = false;
+    }
+
+    // runs both searches from one landmark into the distance tables
+    protected void computeDistances(int landmark, int id, double[] costs) {
+        graph.searchAll(id, true, costs, null);
+        System.arraycopy(costs, 0, fromLandmark, landmark * bound, bound);
+        graph.searchAll(id, false, costs, null);
+        System.arraycopy(costs, 0, toLandmark, landmark * bound, bound);
+    }
+
+    // lowers each node's distance to its nearest landmark with a new landmark
+    protected void updateNearest(int landmark, double[] nearest) {
+        for (int id = 0; id < bound; id++) {
+            double from = fromLandmark[landmark * bound + id];
+            double to = toLandmark[landmark * bound + id];
+            double distance = Math.min(from, to);
+            if (distance < nearest[id])
+                nearest[id] = distance;
+        }
+    }
+
+    // picks the node farthest from the chosen landmarks; nodes no landmark can
+    // reach come first, so that every connected part gets a landmark
+    protected int farthestNode(double[] nearest, int[] chosen, int chosenCount) {
+        int best = -1;
+        double bestDistance = -1;
+        for (int id = 0; id < bound; id++) {
+            if (graph.nodeOf(id) == null || isChosen(id, chosen, chosenCount))
+                continue;
+            // the first landmark is the node with the most edges, a central hub
+            double distance = chosenCount == 0
+                    ? graph.nodeIndex.nodeOf(id).edgesLeaving.size()
+                            + graph.nodeIndex.nodeOf(id).edgesEntering.size()
+                    : nearest[id];
+            if (distance > bestDistance) {
+                best = id;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    // checks whether an id is among the chosen landmarks
+    private static boolean isChosen(int id, int[] chosen, int chosenCount) {
+        for (int i = 0; i < chosenCount; i++)
+            if (chosen[i] == id)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns a lower bound on the cost of the shortest path between two
+     * nodes, from the triangle inequality over every landmark.
+     *
+     * @param from the id of the node the path starts at
+     * @param to the id of the node the path ends at
+     * @return a lower bound on the path cost, positive infinity if some
+     *         landmark proves there is no path, or 0 if a node is newer than
+     *         the index
+     */
+    public double lowerBound(int from, int to) {
+        if (from >= bound || to >= bound)
+            return 0;
+        double lower = 0;
+        for (int offset = 0; offset < fromLandmark.length; offset += bound) {
+            // a difference of two infinities is NaN, which never compares higher
+            double ahead = fromLandmark[offset + to] - fromLandmark[offset + from];
+            double behind = toLandmark[offset + from] - toLandmark[offset + to];
+            if (ahead > lower)
+                lower = ahead;
+            if (behind > lower)
+                lower = behind;
+        }
+        return lower;
+    }
+
+    /**
+     * Marks the index stale, since a new edge may make a path shorter.
+     */
+    public void edgeInserted(long sequence, NodeType pred, NodeType succ, EdgeType weight) {
+        stale = true;
+    }
+
+    /**
+     * Marks the index stale if the edge became cheaper.
+     */
+    public void edgeUpdated(long sequence, NodeType pred, NodeType succ, EdgeType oldWeight,
+            EdgeType newWeight) {
+        if (newWeight.doubleValue() < oldWeight.doubleValue())
+            stale = true;
+    }
+
+    /**
+     * Tests that ALT searches match plain Dijkstra, including after mutations
+     * that make the index stale
+     */
+    @Test
+    public void testAltSearch() {
+        Random random = new Random(19);
+        DijkstraGraph<Integer, Integer> graph = DijkstraGraph.randomGraph(random, 100, 400, 30);
+        LandmarkIndex<Integer, Integer> index = graph.prepareLandmarks(4);
+        index.refresh();
+        Assertions.assertEquals(4, index.getLandmarks().size());
+        graph.setSearchMode(DijkstraGraph.SearchMode.ALT);
+        for (int round = 0; round < 3; round++) {
+            DijkstraGraph.assertMatchesReference(graph, random, 100, 40, (start, end) -> {
+                double cost = graph.shortestPathCost(start, end);
+                Assertions.assertTrue(
+                        index.lowerBound(graph.idOf(start), graph.idOf(end)) <= cost);
+                return cost;
+            }, graph::shortestPathData);
+            // raising a weight keeps the bounds valid, lowering one does not
+            graph.insertEdge(0, 1, 500);
+            index.refresh();
+            graph.insertEdge(0, 1, 1000);
+            Assertions.assertFalse(index.isStale());
+            graph.insertEdge(0, 1, 1);
+            Assertions.assertTrue(index.isStale());
+            graph.removeNode(index.getLandmarks().get(0));
+            graph.insertNode(100 + round);
+            graph.insertEdge(100 + round, random.nextInt(100), 1);
+        }
+    }
+}
@@ -1,5 +1,9 @@
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * This abstract data type represents a collection that maps keys to values,
@@ -33,6 +37,47 @@ public interface MapADT<KeyType, ValueType> {
      */
     public ValueType get(KeyType key) throws NoSuchElementException;
 
+    /**
+     * Retrieves the value that a key maps to, or null when that key is not
+     * stored in this collection.
+     * @param key the key to look up
+     * @return the value that key maps to, or null if there is none
+     * @throws NullPointerException if key is null
+     */
+    public ValueType getOrNull(KeyType key);
+
+    /**
+     * Adds a new key,value pair/mapping to this collection, unless key already
+     * maps to a value.
+     * @param key the key of the key,value pair
+     * @param value the value that key should map to
+     * @return the value that key already mapped to, or null if the new pair
+     *         was added
+     * @throws NullPointerException if key is null
+     */
+    public ValueType putIfAbsent(KeyType key, ValueType value);
+
+    /**
+     * Retrieves the value that a key maps to, first adding a mapping to the
+     * value computed by mappingFunction when key is not yet stored.
+     * @param key the key to look up
+     * @param mappingFunction computes the value for a key that is not stored
+     * @return the value that key maps to after this call
+     * @throws NullPointerException if key is null
+     */
+    public ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction);
+
+    /**
+     * Changes the value that an already stored key maps to.
+     * @param key the key whose value to replace
+     * @param value the new value for key
+     * @return the value that key mapped to before, or null if key is not
+     *         stored (in which case nothing is added)
+     * @throws NullPointerException if key is null
+     */
+    public ValueType replace(KeyType key, ValueType value);
+
     /**
      * Remove the mapping for a key from this collection.
      * @param key the key whose mapping to remove
@@ -65,5 +110,33 @@ public interface MapADT<KeyType, ValueType> {
      */
     public List<KeyType> getKeys();
 
+    /**
+     * Retrieves an unmodifiable list of this collection's keys. The same list
+     * is returned again until this collection's keys change, so repeated calls
+     * without a mutation in between do not copy the keys again.
+     * @return an unmodifiable list of the keys in this collection
+     */
+    public List<KeyType> getKeySnapshot();
+
+    /**
+     * Retrieves an iterator that walks the keys of this collection in place,
+     * without copying them into a list first. The iterator should not be used
+     * after this collection has been changed.
+     * @return an iterator over the keys in this collection
+     */
+    public Iterator<KeyType> keyIterator();
+
+    /**
+     * Passes every key in this collection to a visitor.
+     * @param visitor the action to perform on each key
+     */
+    public void forEachKey(Consumer<? super KeyType> visitor);
+
+    /**
+     * Passes every key,value pair in this collection to a visitor.
+     * @param visitor the action to perform on each key and its value
+     */
+    public void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> visitor);
+
 }
 
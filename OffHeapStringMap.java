@@ -0,0 +1,699 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * String-keyed implementation of MapADT that keeps its hash index and the
+ * UTF-8 bytes of its keys outside of the Java heap, in direct or memory-mapped
+ * ByteBuffers. Each key is assigned a dense int handle, and only the values
+ * (an array indexed by handle) stay on the heap, so the map costs the garbage
+ * collector one array no matter how many keys it holds.
+ *
+ * The index is an open-addressing table with linear probing and backward-shift
+ * deletion. Each slot stores the key's hash code, the offset and length of its
+ * bytes in the key arena, and its handle. Keys are compared against the arena
+ * byte by byte, so lookups do not allocate.
+ *
+ * When created with a directory, both buffers are mapped from files in it, and
+ * reopening that directory restores every key and handle without rehashing.
+ * Values are not persisted; callers either reattach them with replace(), or
+ * keep their payload elsewhere and use handleOf() directly.
+ */
+public class OffHeapStringMap<ValueType> implements MapADT<String, ValueType>, AutoCloseable {
+
+    protected static final int MAGIC = 0x4F48534D; // "OHSM"
+    protected static final int HEADER_BYTES = 32;
+    protected static final int SLOT_BYTES = 16;
+    protected static final int HASH = 0, KEY_OFFSET = 4, KEY_LENGTH = 8, HANDLE = 12;
+    protected static final int EMPTY = -1; // handle stored in unused slots
+    protected static final double MAX_LOAD_FACTOR = 0.75;
+    protected static final String INDEX_FILE = "index.bin", KEYS_FILE = "keys.bin";
+
+    protected ByteBuffer index; // header followed by capacity slots
+    protected ByteBuffer arena; // UTF-8 bytes of every key, appended in insertion order
+    protected int capacity;
+    protected int size;
+    protected int arenaUsed; // bytes of arena in use, including bytes of removed keys
+    protected int nextHandle; // handles below this have been handed out
+
+    protected Object[] values; // indexed by handle
+    protected int[] freeHandles = new int[16]; // handles of removed keys, reused first
+    protected int freeCount = 0;
+
+    protected final Path directory; // null when the buffers are not file backed
+    protected FileChannel indexChannel;
+    protected FileChannel arenaChannel;
+    protected List<String> keySnapshot = null;
+
+    /**
+     * Constructor to initialize a map backed by direct buffers.
+     * @param capacity the minimum initial number of slots, rounded up to the
+     *        next power of two
+     */
+    public OffHeapStringMap(int capacity) {
+        this.directory = null;
+        try {
+            create(capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Direct buffers cannot fail with an IOException", e);
+        }
+    }
+
+    /**
+     * Default constructor to initialize a map with a default capacity of 64.
+     */
+    public OffHeapStringMap() {
+        this(64);
+    }
+
+    /**
+     * Constructor to open the map stored in a directory, or to create a new
+     * one there if the directory holds no map yet.
+     * @param directory the directory holding the index and key files
+     * @param capacity the minimum initial number of slots of a new map
+     * @throws IOException if the files cannot be created, read or mapped
+     */
+    public OffHeapStringMap(Path directory, int capacity) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path indexPath = directory.resolve(INDEX_FILE);
+        boolean exists = Files.exists(indexPath) && Files.size(indexPath) >= HEADER_BYTES;
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        arenaChannel = FileChannel.open(directory.resolve(KEYS_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (exists) reopen();
+        else create(capacity);
+    }
+
+    /**
+     * Allocates the buffers of an empty map.
+     * @param minCapacity the minimum number of slots
+     * @throws IOException if a file-backed buffer cannot be mapped
+     */
+    private void create(int minCapacity) throws IOException {
+        capacity = 1;
+        while (capacity < minCapacity) capacity <<= 1;
+        index = allocate(indexChannel, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        clearSlots(index, capacity);
+        arena = allocate(arenaChannel, Math.max(1024, capacity * 16L));
+        size = arenaUsed = nextHandle = 0;
+        values = new Object[Math.max(16, capacity / 2)];
+        writeHeader();
+    }
+
+    /**
+     * Restores the state of a map from the header of its mapped index file.
+     * @throws IOException if a file cannot be mapped or holds no valid map
+     */
+    private void reopen() throws IOException {
+        ByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) throw new IOException("Not an OffHeapStringMap index: " + directory);
+        capacity = header.getInt(4);
+        size = header.getInt(8);
+        arenaUsed = header.getInt(12);
+        nextHandle = header.getInt(16);
+        index = allocate(indexChannel, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        arena = allocate(arenaChannel, Math.max(arenaChannel.size(), Math.max(1024, arenaUsed)));
+        values = new Object[Math.max(16, nextHandle)];
+        // every handle below nextHandle that no slot refers to is free
+        boolean[] used = new boolean[nextHandle];
+        for (int slot = 0; slot < capacity; slot++) {
+            int handle = slotInt(slot, HANDLE);
+            if (handle != EMPTY) used[handle] = true;
+        }
+        for (int handle = nextHandle - 1; handle >= 0; handle--)
+            if (!used[handle]) pushFreeHandle(handle);
+    }
+
+    /**
+     * Allocates a direct buffer, or maps a region of a file when a channel is
+     * provided. Mapping a region larger than the file grows the file.
+     * @param channel the file to map, or null for a direct buffer
+     * @param bytes the size of the buffer
+     * @return the buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    protected static ByteBuffer allocate(FileChannel channel, long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE) throw new IllegalStateException("OffHeapStringMap is limited to 2GB per buffer");
+        if (channel == null) return ByteBuffer.allocateDirect((int) bytes);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+    }
+
+    /**
+     * Marks every slot of an index buffer as empty.
+     * @param buffer the index buffer
+     * @param slots the number of slots in it
+     */
+    private static void clearSlots(ByteBuffer buffer, int slots) {
+        for (int slot = 0; slot < slots; slot++)
+            buffer.putInt(HEADER_BYTES + slot * SLOT_BYTES + HANDLE, EMPTY);
+    }
+
+    /**
+     * Writes the map's counters into the header of the index buffer.
+     */
+    private void writeHeader() {
+        index.putInt(0, MAGIC);
+        index.putInt(4, capacity);
+        index.putInt(8, size);
+        index.putInt(12, arenaUsed);
+        index.putInt(16, nextHandle);
+    }
+
+    private int slotInt(int slot, int field) {
+        return index.getInt(HEADER_BYTES + slot * SLOT_BYTES + field);
+    }
+
+    private void setSlot(int slot, int hash, int keyOffset, int keyLength, int handle) {
+        int base = HEADER_BYTES + slot * SLOT_BYTES;
+        index.putInt(base + HASH, hash);
+        index.putInt(base + KEY_OFFSET, keyOffset);
+        index.putInt(base + KEY_LENGTH, keyLength);
+        index.putInt(base + HANDLE, handle);
+    }
+
+    /**
+     * Spreads the higher bits of a key's hash code into the lower ones. The
+     * hash code of a String is defined by its contents, so it is the same
+     * when a file-backed map is reopened.
+     * @param key the key to hash
+     * @return the spread hash code
+     */
+    protected static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compares a key with the UTF-8 bytes stored in the arena, encoding the
+     * key one character at a time so that no byte array is allocated. Like
+     * String.getBytes(), an unpaired surrogate is encoded as '?'.
+     * @param offset the position of the stored bytes in the arena
+     * @param length the number of stored bytes
+     * @param key the key to compare against
+     * @return true if key encodes to exactly the stored bytes
+     */
+    protected boolean keyEquals(int offset, int length, String key) {
+        int pos = offset;
+        int end = offset + length;
+        for (int i = 0; i < key.length(); i++) {
+            int c = key.charAt(i);
+            if (c < 0x80) {
+                if (pos >= end || arena.get(pos++) != (byte) c) return false;
+                continue;
+            }
+            if (Character.isHighSurrogate((char) c) && i + 1 < key.length()
+                    && Character.isLowSurrogate(key.charAt(i + 1)))
+                c = Character.toCodePoint((char) c, key.charAt(++i));
+            else if (Character.isSurrogate((char) c))
+                c = '?';
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (end - pos < bytes) return false;
+            if (bytes == 1) {
+                if (arena.get(pos++) != (byte) c) return false;
+                continue;
+            }
+            int lead = bytes == 2 ? 0xC0 | (c >> 6) : bytes == 3 ? 0xE0 | (c >> 12) : 0xF0 | (c >> 18);
+            if (arena.get(pos++) != (byte) lead) return false;
+            for (int shift = (bytes - 2) * 6; shift >= 0; shift -= 6)
+                if (arena.get(pos++) != (byte) (0x80 | ((c >> shift) & 0x3F))) return false;
+        }
+        return pos == end;
+    }
+
+    /**
+     * Probes for a key, stopping at either the slot that stores it or the
+     * empty slot where it would be inserted.
+     * @param key the key to look for
+     * @param hash the spread hash code of that key
+     * @return the index of the slot holding key, or the bitwise complement
+     *         (~index) of the empty slot it belongs in when it is not stored
+     */
+    protected int probe(String key, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        for (int handle; (handle = slotInt(slot, HANDLE)) != EMPTY; slot = (slot + 1) & mask) {
+            if (slotInt(slot, HASH) == hash
+                    && keyEquals(slotInt(slot, KEY_OFFSET), slotInt(slot, KEY_LENGTH), key))
+                return slot;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Decodes the key stored in an occupied slot.
+     * @param slot the index of the slot
+     * @return the key in that slot
+     */
+    protected String keyAt(int slot) {
+        byte[] bytes = new byte[slotInt(slot, KEY_LENGTH)];
+        arena.get(slotInt(slot, KEY_OFFSET), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void pushFreeHandle(int handle) {
+        if (freeCount == freeHandles.length) freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        freeHandles[freeCount++] = handle;
+    }
+
+    /**
+     * Stores a new key in an empty slot found by probe(), appending its bytes
+     * to the arena and assigning it a handle.
+     * @param slot the empty slot to fill
+     * @param key the key to store
+     * @param hash the spread hash code of key
+     * @param value the value of the key
+     * @return the handle assigned to key
+     */
+    private int insertAt(int slot, String key, int hash, ValueType value) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        ensureArena(bytes.length);
+        arena.put(arenaUsed, bytes);
+        int handle = freeCount > 0 ? freeHandles[--freeCount] : nextHandle++;
+        if (handle == values.length) values = Arrays.copyOf(values, values.length * 2);
+        values[handle] = value;
+        setSlot(slot, hash, arenaUsed, bytes.length, handle);
+        arenaUsed += bytes.length;
+        size++;
+        keySnapshot = null;
+        if (size > capacity * MAX_LOAD_FACTOR) resize();
+        else writeHeader();
+        return handle;
+    }
+
+    /**
+     * Grows the arena so that it has room for more bytes.
+     * @param bytes the number of bytes about to be appended
+     */
+    private void ensureArena(int bytes) {
+        if ((long) arenaUsed + bytes <= arena.capacity()) return;
+        long newSize = Math.max((long) arena.capacity() * 2, (long) arenaUsed + bytes);
+        try {
+            ByteBuffer grown = allocate(arenaChannel, newSize);
+            if (arenaChannel == null) {
+                // a mapping of the grown file already holds the old bytes
+                ByteBuffer old = arena.duplicate();
+                old.position(0).limit(arenaUsed);
+                grown.put(old);
+            }
+            arena = grown;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to grow the key arena", e);
+        }
+    }
+
+    /**
+     * Doubles the number of slots. Only the keys that are still stored are
+     * copied into the new arena, which drops the bytes of removed keys.
+     * Handles do not change.
+     */
+    private void resize() {
+        int oldCapacity = capacity;
+        ByteBuffer oldIndex = index;
+        ByteBuffer oldArena = arena;
+        try {
+            // file-backed maps build the new buffers in temporary files first
+            FileChannel newIndexChannel = null, newArenaChannel = null;
+            if (directory != null) {
+                newIndexChannel = FileChannel.open(directory.resolve(INDEX_FILE + ".tmp"),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                newArenaChannel = FileChannel.open(directory.resolve(KEYS_FILE + ".tmp"),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            capacity = oldCapacity * 2;
+            index = allocate(newIndexChannel, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+            clearSlots(index, capacity);
+            arena = allocate(newArenaChannel, Math.max(1024, arenaUsed * 2L));
+            arenaUsed = 0;
+            int mask = capacity - 1;
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                int base = HEADER_BYTES + oldSlot * SLOT_BYTES;
+                int handle = oldIndex.getInt(base + HANDLE);
+                if (handle == EMPTY) continue;
+                int hash = oldIndex.getInt(base + HASH);
+                int length = oldIndex.getInt(base + KEY_LENGTH);
+                ByteBuffer keyBytes = oldArena.duplicate();
+                keyBytes.position(oldIndex.getInt(base + KEY_OFFSET)).limit(keyBytes.position() + length);
+                arena.put(arenaUsed, keyBytes, keyBytes.position(), length);
+                int slot = hash & mask;
+                while (slotInt(slot, HANDLE) != EMPTY) slot = (slot + 1) & mask;
+                setSlot(slot, hash, arenaUsed, length, handle);
+                arenaUsed += length;
+            }
+            writeHeader();
+            if (directory != null) {
+                indexChannel.close();
+                arenaChannel.close();
+                Files.move(directory.resolve(INDEX_FILE + ".tmp"), directory.resolve(INDEX_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(directory.resolve(KEYS_FILE + ".tmp"), directory.resolve(KEYS_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                indexChannel = newIndexChannel;
+                arenaChannel = newArenaChannel;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to resize the index", e);
+        }
+    }
+
+    /**
+     * Retrieves the handle assigned to a key. Handles are dense, stay the same
+     * for as long as the key is stored, and survive reopening a file-backed map.
+     * @param key the key to look up
+     * @return the handle of key, or -1 if it is not stored
+     * @throws NullPointerException if the key is null
+     */
+    public int handleOf(String key) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int slot = probe(key, hash(key));
+        return slot >= 0 ? slotInt(slot, HANDLE) : -1;
+    }
+
+    /**
+     * Retrieves the value stored for a handle.
+     * @param handle a handle returned by handleOf()
+     * @return the value of the key with that handle
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType valueOf(int handle) {
+        return (ValueType) values[handle];
+    }
+
+    /**
+     * Adds a key-value pair to the map.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @throws IllegalArgumentException if the key already exists
+     * @throws NullPointerException if the key is null
+     */
+    public void put(String key, ValueType value) throws IllegalArgumentException {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) throw new IllegalArgumentException("The key already mapped");
+        insertAt(~slot, key, hash, value);
+    }
+
+    /**
+     * Checks if the map contains a given key.
+     * @param key the key to check
+     * @return true if the key exists, false otherwise
+     */
+    public boolean containsKey(String key) {
+        if (key == null) return false;
+        return probe(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Retrieves the value associated with a given key.
+     * @param key the key to retrieve
+     * @return the value associated with the key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    public ValueType get(String key) throws NoSuchElementException {
+        int handle = key == null ? -1 : handleOf(key);
+        if (handle < 0) throw new NoSuchElementException("The key is not stored");
+        return valueOf(handle);
+    }
+
+    /**
+     * Retrieves the value associated with a given key, or null if the key does
+     * not exist.
+     * @param key the key to retrieve
+     * @return the value associated with the key, or null
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType getOrNull(String key) {
+        int handle = handleOf(key);
+        return handle < 0 ? null : valueOf(handle);
+    }
+
+    /**
+     * Adds a key-value pair to the map if the key does not exist yet.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @return the value the key already mapped to, or null if the pair was added
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType putIfAbsent(String key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) return valueOf(slotInt(slot, HANDLE));
+        insertAt(~slot, key, hash, value);
+        return null;
+    }
+
+    /**
+     * Retrieves the value associated with a given key, adding a pair with the
+     * computed value first if the key does not exist yet.
+     * @param key the key to retrieve
+     * @param mappingFunction computes the value for a missing key
+     * @return the value associated with the key after this call
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType computeIfAbsent(String key,
+            Function<? super String, ? extends ValueType> mappingFunction) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) return valueOf(slotInt(slot, HANDLE));
+        ValueType value = mappingFunction.apply(key);
+        insertAt(~slot, key, hash, value);
+        return value;
+    }
+
+    /**
+     * Replaces the value of a key that already exists.
+     * @param key the key of the pair
+     * @param value the new value of the pair
+     * @return the previous value of the key, or null if the key does not exist
+     * @throws NullPointerException if the key is null
+     */
+    public ValueType replace(String key, ValueType value) {
+        int handle = handleOf(key);
+        if (handle < 0) return null;
+        ValueType oldValue = valueOf(handle);
+        values[handle] = value;
+        return oldValue;
+    }
+
+    /**
+     * Removes a key-value pair from the map. The key's bytes stay in the arena
+     * until the next resize, and its handle is reused by a later insertion.
+     * @param key the key to remove
+     * @return the value of the removed key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    public ValueType remove(String key) throws NoSuchElementException {
+        int gap = key == null ? -1 : probe(key, hash(key));
+        if (gap < 0) throw new NoSuchElementException("The key is not stored");
+        int handle = slotInt(gap, HANDLE);
+        ValueType removedValue = valueOf(handle);
+        values[handle] = null;
+        pushFreeHandle(handle);
+        // shift back later entries of the probe run whose home slot is not after the gap
+        int mask = capacity - 1;
+        for (int slot = (gap + 1) & mask; slotInt(slot, HANDLE) != EMPTY; slot = (slot + 1) & mask) {
+            int home = slotInt(slot, HASH) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                setSlot(gap, slotInt(slot, HASH), slotInt(slot, KEY_OFFSET),
+                        slotInt(slot, KEY_LENGTH), slotInt(slot, HANDLE));
+                gap = slot;
+            }
+        }
+        index.putInt(HEADER_BYTES + gap * SLOT_BYTES + HANDLE, EMPTY);
+        size--;
+        keySnapshot = null;
+        writeHeader();
+        return removedValue;
+    }
+
+    /**
+     * Clears all key-value pairs from the map.
+     */
+    public void clear() {
+        clearSlots(index, capacity);
+        Arrays.fill(values, null);
+        size = arenaUsed = nextHandle = freeCount = 0;
+        keySnapshot = null;
+        writeHeader();
+    }
+
+    /**
+     * Retrieves the number of key-value pairs in the map.
+     * @return the number of pairs
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the capacity of the map.
+     * @return the number of slots in the index
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Retrieves all keys stored in the map, decoded into new Strings.
+     * @return a LinkedList containing all keys in the map
+     */
+    public LinkedList<String> getKeys() {
+        LinkedList<String> keys = new LinkedList<>();
+        forEachKey(keys::add);
+        return keys;
+    }
+
+    /**
+     * Retrieves an unmodifiable list of all keys, which is reused until a key
+     * is added or removed.
+     * @return an unmodifiable list of the keys in the map
+     */
+    public List<String> getKeySnapshot() {
+        if (keySnapshot == null) {
+            ArrayList<String> keys = new ArrayList<>(size);
+            forEachKey(keys::add);
+            keySnapshot = Collections.unmodifiableList(keys);
+        }
+        return keySnapshot;
+    }
+
+    /**
+     * Retrieves an iterator over all keys, decoding each one as it is reached.
+     * @return an iterator over the keys in the map
+     */
+    public Iterator<String> keyIterator() {
+        return new Iterator<String>() {
+            private int slot = nextOccupied(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < capacity;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException("No more keys");
+                String key = keyAt(slot);
+                slot = nextOccupied(slot + 1);
+                return key;
+            }
+        };
+    }
+
+    private int nextOccupied(int slot) {
+        while (slot < capacity && slotInt(slot, HANDLE) == EMPTY) slot++;
+        return slot;
+    }
+
+    /**
+     * Passes every key in the map to a visitor.
+     * @param visitor the action to perform on each key
+     */
+    public void forEachKey(Consumer<? super String> visitor) {
+        for (int slot = nextOccupied(0); slot < capacity; slot = nextOccupied(slot + 1))
+            visitor.accept(keyAt(slot));
+    }
+
+    /**
+     * Passes every key-value pair in the map to a visitor.
+     * @param visitor the action to perform on each key and its value
+     */
+    public void forEachEntry(BiConsumer<? super String, ? super ValueType> visitor) {
+        for (int slot = nextOccupied(0); slot < capacity; slot = nextOccupied(slot + 1))
+            visitor.accept(keyAt(slot), valueOf(slotInt(slot, HANDLE)));
+    }
+
+    /**
+     * Writes any changes of a file-backed map to its files, and closes them.
+     * Direct buffers are released by the garbage collector instead.
+     * @throws IOException if the files cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (directory == null) return;
+        writeHeader();
+        ((java.nio.MappedByteBuffer) index).force();
+        ((java.nio.MappedByteBuffer) arena).force();
+        indexChannel.close();
+        arenaChannel.close();
+    }
+
+
+    /**
+     * Tests the map operations on direct buffers, including non-ASCII keys,
+     * colliding keys and a resize.
+     */
+    @Test
+    public void testDirectBuffers() {
+        OffHeapStringMap<Integer> map = new OffHeapStringMap<>(4);
+        String[] keys = {"Memorial Union", "Aa", "BB", "Caf\u00e9", "Stra\u00dfe \uD83D\uDEB2", "", "\uD800"};
+        for (int i = 0; i < keys.length; i++) map.put(keys[i], i);
+        for (int i = 0; i < 200; i++) map.put("Hall " + i, i);
+        for (int i = 0; i < keys.length; i++) assertEquals(i, map.get(keys[i]));
+        assertThrows(IllegalArgumentException.class, () -> map.put("Caf\u00e9", 9));
+        assertFalse(map.containsKey("Cafe"));
+        assertEquals(1, map.remove("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(206, map.getSize());
+        assertTrue(map.getKeys().contains("Stra\u00dfe \uD83D\uDEB2"));
+        int handle = map.handleOf("Hall 7");
+        assertEquals(7, map.valueOf(handle));
+    }
+
+    /**
+     * Tests that a file-backed map can be closed, reopened and still finds
+     * every key under its original handle.
+     */
+    @Test
+    public void testReopenMappedFiles() throws IOException {
+        Path directory = Files.createTempDirectory("offheap");
+        try {
+            int[] handles = new int[100];
+            try (OffHeapStringMap<String> map = new OffHeapStringMap<>(directory, 8)) {
+                for (int i = 0; i < handles.length; i++) map.put("Building " + i, "v" + i);
+                map.remove("Building 3");
+                for (int i = 0; i < handles.length; i++) handles[i] = map.handleOf("Building " + i);
+            }
+            try (OffHeapStringMap<String> map = new OffHeapStringMap<>(directory, 8)) {
+                assertEquals(99, map.getSize());
+                assertFalse(map.containsKey("Building 3"));
+                for (int i = 0; i < handles.length; i++) assertEquals(handles[i], map.handleOf("Building " + i));
+                assertNull(map.getOrNull("Building 5"));
+                assertEquals(-1, handles[3]);
+                // the handle freed by the removal before closing is reused
+                map.put("Building 3", "again");
+                assertEquals(3, map.handleOf("Building 3"));
+            }
+        } finally {
+            // remove the index and key files along with their directory
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+}
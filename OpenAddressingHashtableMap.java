@@ -0,0 +1,452 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Open-addressing implementation of MapADT. Keys, values and cached hash codes
+ * are kept in three parallel arrays and collisions are resolved by linear
+ * probing, so a lookup touches consecutive slots instead of walking a chain of
+ * list nodes. Removals use backward shifting, which keeps every probe sequence
+ * free of tombstones.
+ */
+public class OpenAddressingHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // the table resizes once more than this fraction of the slots is in use
+    protected static final double MAX_LOAD_FACTOR = 0.75;
+
+    protected Object[] keys; // null marks an empty slot
+    protected Object[] values;
+    protected int[] hashes; // cached spread hash code of the key in each slot
+    protected int size = 0;
+    protected List<KeyType> keySnapshot = null; // cleared whenever a key is added or removed
+
+    /**
+     * Constructor to initialize the table with at least the given capacity.
+     * The capacity is rounded up to the next power of two.
+     * @param capacity the minimum initial number of slots
+     */
+    public OpenAddressingHashtableMap(int capacity) {
+        int slots = 1;
+        while (slots < capacity) slots <<= 1;
+        keys = new Object[slots];
+        values = new Object[slots];
+        hashes = new int[slots];
+    }
+
+    /**
+     * Default constructor to initialize the table with a default capacity of 64.
+     */
+    public OpenAddressingHashtableMap() {
+        this(64);
+    }
+
+    /**
+     * Spreads the higher bits of a key's hash code into the lower ones, since
+     * only the lower bits are used to pick a slot.
+     * @param key the key to hash
+     * @return the spread hash code
+     */
+    protected static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Finds the slot that stores a key.
+     * @param key the key to look for
+     * @param hash the spread hash code of that key
+     * @return the index of the slot holding key, or -1 if it is not stored
+     */
+    protected int findSlot(Object key, int hash) {
+        int slot = probe(key, hash);
+        return slot >= 0 ? slot : -1;
+    }
+
+    /**
+     * Probes for a key, stopping at either the slot that stores it or the
+     * empty slot where it would be inserted.
+     * @param key the key to look for
+     * @param hash the spread hash code of that key
+     * @return the index of the slot holding key, or the bitwise complement
+     *         (~index) of the empty slot it belongs in when it is not stored
+     */
+    protected int probe(Object key, int hash) {
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && (keys[i] == key || keys[i].equals(key)))
+                return i;
+        }
+        return ~i;
+    }
+
+    /**
+     * Stores a new entry in an empty slot found by probe(), and resizes the
+     * table when it becomes too full.
+     * @param slot the empty slot to fill
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @param hash the spread hash code of key
+     */
+    protected void insertAt(int slot, Object key, Object value, int hash) {
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        size++;
+        keySnapshot = null;
+        if (size > keys.length * MAX_LOAD_FACTOR) resize();
+    }
+
+    /**
+     * Adds a key-value pair to the table.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @throws IllegalArgumentException if the key already exists
+     * @throws NullPointerException if the key is null
+     */
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) throw new IllegalArgumentException("The key already mapped");
+        insertAt(~slot, key, value, hash);
+    }
+
+    /**
+     * Adds a key-value pair to the table if the key does not exist yet.
+     * @param key the key of the pair
+     * @param value the value of the pair
+     * @return the value the key already mapped to, or null if the pair was added
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType putIfAbsent(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) return (ValueType) values[slot];
+        insertAt(~slot, key, value, hash);
+        return null;
+    }
+
+    /**
+     * Retrieves the value associated with a given key, adding an entry with the
+     * computed value first if the key does not exist yet.
+     * @param key the key to retrieve
+     * @param mappingFunction computes the value for a missing key
+     * @return the value associated with the key after this call
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int hash = hash(key);
+        int slot = probe(key, hash);
+        if (slot >= 0) return (ValueType) values[slot];
+        ValueType value = mappingFunction.apply(key);
+        insertAt(~slot, key, value, hash);
+        return value;
+    }
+
+    /**
+     * Replaces the value of a key that already exists.
+     * @param key the key of the pair
+     * @param value the new value of the pair
+     * @return the previous value of the key, or null if the key does not exist
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType replace(KeyType key, ValueType value) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int slot = findSlot(key, hash(key));
+        if (slot < 0) return null;
+        ValueType oldValue = (ValueType) values[slot];
+        values[slot] = value;
+        return oldValue;
+    }
+
+    /**
+     * Resizes the table by doubling its capacity and reinserting every entry.
+     */
+    protected void resize() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new Object[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    /**
+     * Checks if the table contains a given key.
+     * @param key the key to check
+     * @return true if the key exists, false otherwise
+     */
+    public boolean containsKey(KeyType key) {
+        if (key == null) return false;
+        return findSlot(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Retrieves the value associated with a given key.
+     * @param key the key to retrieve
+     * @return the value associated with the key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        int slot = key == null ? -1 : findSlot(key, hash(key));
+        if (slot < 0) throw new NoSuchElementException("The key is not stored");
+        return (ValueType) values[slot];
+    }
+
+    /**
+     * Retrieves the value associated with a given key, or null if the key does
+     * not exist.
+     * @param key the key to retrieve
+     * @return the value associated with the key, or null
+     * @throws NullPointerException if the key is null
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType getOrNull(KeyType key) {
+        if (key == null) throw new NullPointerException("The key is null");
+        int slot = findSlot(key, hash(key));
+        return slot < 0 ? null : (ValueType) values[slot];
+    }
+
+    /**
+     * Removes a key-value pair from the table. The entries that follow the
+     * removed slot in its probe run are shifted back to close the gap.
+     * @param key the key to remove
+     * @return the value of the removed key
+     * @throws NoSuchElementException if the key does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        int slot = key == null ? -1 : findSlot(key, hash(key));
+        if (slot < 0) throw new NoSuchElementException("The key is not stored");
+        ValueType removedValue = (ValueType) values[slot];
+        deleteSlot(slot);
+        return removedValue;
+    }
+
+    /**
+     * Empties a slot and shifts back any later entry of the same probe run
+     * whose home slot is not between the gap and its current position.
+     * @param gap the index of the slot to empty
+     */
+    protected void deleteSlot(int gap) {
+        int mask = keys.length - 1;
+        for (int i = (gap + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = hashes[i] & mask;
+            // distance travelled from home slot, compared to distance from the gap
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                hashes[gap] = hashes[i];
+                gap = i;
+            }
+        }
+        keys[gap] = null;
+        values[gap] = null;
+        size--;
+        keySnapshot = null;
+    }
+
+    /**
+     * Clears all key-value pairs from the table.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+        keySnapshot = null;
+    }
+
+    /**
+     * Retrieves the number of key-value pairs in the table.
+     * @return the number of pairs
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the capacity of the table.
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Retrieves all keys stored in the table.
+     * @return a LinkedList containing all keys in the table
+     */
+    public LinkedList<KeyType> getKeys() {
+        LinkedList<KeyType> keyList = new LinkedList<>();
+        forEachKey(keyList::add);
+        return keyList;
+    }
+
+    /**
+     * Retrieves an unmodifiable list of all keys, which is reused until a key
+     * is added or removed.
+     * @return an unmodifiable list of the keys in the table
+     */
+    public List<KeyType> getKeySnapshot() {
+        if (keySnapshot == null) {
+            ArrayList<KeyType> keyList = new ArrayList<>(size);
+            forEachKey(keyList::add);
+            keySnapshot = Collections.unmodifiableList(keyList);
+        }
+        return keySnapshot;
+    }
+
+    /**
+     * Retrieves an iterator over all keys, which walks the slots in place.
+     * @return an iterator over the keys in the table
+     */
+    public Iterator<KeyType> keyIterator() {
+        return new Iterator<KeyType>() {
+            private int slot = nextOccupied(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < keys.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public KeyType next() {
+                if (!hasNext()) throw new NoSuchElementException("No more keys");
+                KeyType key = (KeyType) keys[slot];
+                slot = nextOccupied(slot + 1);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Finds the first slot at or after an index that holds a key. Together with
+     * keyAt() and valueAt(), this is a cursor over the table that does not
+     * allocate anything.
+     * @param slot the index to start searching from
+     * @return the index of that slot, or the capacity if there is none
+     */
+    public int nextOccupied(int slot) {
+        while (slot < keys.length && keys[slot] == null) slot++;
+        return slot;
+    }
+
+    /**
+     * Retrieves the key stored in an occupied slot.
+     * @param slot the index of a slot returned by nextOccupied()
+     * @return the key in that slot
+     */
+    @SuppressWarnings("unchecked")
+    public KeyType keyAt(int slot) {
+        return (KeyType) keys[slot];
+    }
+
+    /**
+     * Retrieves the value stored in an occupied slot.
+     * @param slot the index of a slot returned by nextOccupied()
+     * @return the value in that slot
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType valueAt(int slot) {
+        return (ValueType) values[slot];
+    }
+
+    /**
+     * Passes every key in the table to a visitor.
+     * @param visitor the action to perform on each key
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachKey(Consumer<? super KeyType> visitor) {
+        Object[] slots = keys;
+        for (Object key : slots) {
+            if (key != null) visitor.accept((KeyType) key);
+        }
+    }
+
+    /**
+     * Passes every key-value pair in the table to a visitor.
+     * @param visitor the action to perform on each key and its value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> visitor) {
+        Object[] slots = keys;
+        Object[] slotValues = values;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) visitor.accept((KeyType) slots[i], (ValueType) slotValues[i]);
+        }
+    }
+
+
+    /**
+     * Tests that entries can be stored, found and removed across several resizes.
+     */
+    @Test
+    public void testPutGetRemoveAcrossResize() {
+        OpenAddressingHashtableMap<Integer, String> map = new OpenAddressingHashtableMap<>(4);
+        for (int i = 0; i < 1000; i++) map.put(i, "v" + i);
+        assertEquals(1000, map.getSize());
+        assertTrue(map.getCapacity() >= 1000);
+        for (int i = 0; i < 1000; i += 2) assertEquals("v" + i, map.remove(i));
+        assertEquals(500, map.getSize());
+        for (int i = 0; i < 1000; i++) assertEquals(i % 2 == 1, map.containsKey(i));
+        assertThrows(NoSuchElementException.class, () -> map.get(0));
+    }
+
+    /**
+     * Tests that backward-shift deletion keeps colliding keys reachable.
+     */
+    @Test
+    public void testRemoveWithinCollidingRun() {
+        OpenAddressingHashtableMap<String, Integer> map = new OpenAddressingHashtableMap<>(8);
+        // "Aa" and "BB" share a hash code, so they land in the same probe run
+        map.put("Aa", 1);
+        map.put("BB", 2);
+        map.put("AaAa", 3);
+        map.put("BBBB", 4);
+        assertEquals(1, map.remove("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(3, map.remove("AaAa"));
+        assertEquals(4, map.get("BBBB"));
+        assertEquals(2, map.getSize());
+    }
+
+    /**
+     * Tests that null and duplicate keys are rejected like in HashtableMap.
+     */
+    @Test
+    public void testNullAndDuplicateKeys() {
+        OpenAddressingHashtableMap<String, Integer> map = new OpenAddressingHashtableMap<>();
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        map.put("key", 1);
+        assertThrows(IllegalArgumentException.class, () -> map.put("key", 2));
+        assertFalse(map.containsKey(null));
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of one shortest path search: the nodes along the path, the
+ * weight of each edge (leg) between them, the cost of reaching each node from
+ * the start, and the total cost, so that a caller rendering a route needs no
+ * further searches or edge lookups. An empty result means no path exists.
+ */
+public class PathResult<NodeType> {
+
+    protected final List<NodeType> nodes;
+    protected final double[] legCosts; // weight of the edge after each node but the last
+    protected final double[] cumulativeCosts; // cost from the start to each node
+
+    /**
+     * Creates a new PathResult from the nodes of a path and its edge weights.
+     *
+     * @param nodes the nodes of the path, from start to end
+     * @param legCosts the weight of each edge, one fewer than the nodes
+     * @throws IllegalArgumentException if there is not exactly one weight per edge
+     */
+    public PathResult(List<NodeType> nodes, double[] legCosts) {
+        if (legCosts.length != Math.max(nodes.size() - 1, 0))
+            throw new IllegalArgumentException("Expected one cost per edge of the path.");
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.legCosts = legCosts;
+        cumulativeCosts = new double[nodes.size()];
+        for (int i = 0; i < legCosts.length; i++)
+            cumulativeCosts[i + 1] = cumulativeCosts[i] + legCosts[i];
+    }
+
+    /**
+     * Creates the result of a search that found no path.
+     *
+     * @return an empty PathResult
+     */
+    public static <NodeType> PathResult<NodeType> empty() {
+        return new PathResult<>(new ArrayList<>(), new double[0]);
+    }
+
+    /**
+     * Checks whether a path was found.
+     *
+     * @return true if the path has no nodes
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Retrieves the nodes along the path.
+     *
+     * @return the nodes from start to end, unmodifiable
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Retrieves the weight of every edge along the path.
+     *
+     * @return the weight of the edge after each node but the last
+     */
+    public List<Double> getLegCosts() {
+        List<Double> costs = new ArrayList<>(legCosts.length);
+        for (double cost : legCosts)
+            costs.add(cost);
+        return costs;
+    }
+
+    /**
+     * Retrieves the cost of reaching every node along the path.
+     *
+     * @return the cost from the start to each node, beginning with 0
+     */
+    public List<Double> getCumulativeCosts() {
+        List<Double> costs = new ArrayList<>(cumulativeCosts.length);
+        for (double cost : cumulativeCosts)
+            costs.add(cost);
+        return costs;
+    }
+
+    /**
+     * Return the total cost of the path.
+     *
+     * @return the sum of the weights of every edge, or 0 if there are none
+     */
+    public double getTotalCost() {
+        return cumulativeCosts.length == 0 ? 0 : cumulativeCosts[cumulativeCosts.length - 1];
+    }
+}
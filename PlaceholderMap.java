@@ -1,6 +1,12 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.HashMap;
 import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implements MapADT using an instance of java.util.HashMap.
@@ -36,6 +42,35 @@ public class PlaceholderMap<KeyType, ValueType> implements MapADT<KeyType, Value
         throw new NoSuchElementException("key " + key.toString() + " not in map");
     }
 
+    @Override
+    public ValueType getOrNull(KeyType key) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return baseMap.get(key);
+    }
+
+    @Override
+    public ValueType putIfAbsent(KeyType key, ValueType value) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return baseMap.putIfAbsent(key, value);
+    }
+
+    @Override
+    public ValueType computeIfAbsent(KeyType key,
+            Function<? super KeyType, ? extends ValueType> mappingFunction) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return baseMap.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public ValueType replace(KeyType key, ValueType value) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return baseMap.replace(key, value);
+    }
+
     @Override
     public ValueType remove(KeyType key) throws NoSuchElementException {
         if (key == null)
@@ -66,6 +101,26 @@ public class PlaceholderMap<KeyType, ValueType> implements MapADT<KeyType, Value
         throw new UnsupportedOperationException("PlaceholderMap does not support the .getKeys() method");
     }
 
+    @Override
+    public List<KeyType> getKeySnapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(baseMap.keySet()));
+    }
+
+    @Override
+    public Iterator<KeyType> keyIterator() {
+        return baseMap.keySet().iterator();
+    }
+
+    @Override
+    public void forEachKey(Consumer<? super KeyType> visitor) {
+        baseMap.keySet().forEach(visitor);
+    }
+
+    @Override
+    public void forEachEntry(BiConsumer<? super KeyType, ? super ValueType> visitor) {
+        baseMap.forEach(visitor);
+    }
+
 
 }
 
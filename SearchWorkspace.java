@@ -0,0 +1,140 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of one shortest path search: the cost and predecessor of
+ * every node id, whether it is settled, and the heap of queued ids. Each entry
+ * is stamped with the generation of the search that wrote it, so starting a
+ * new search only increments the generation instead of clearing the arrays.
+ * A workspace belongs to one thread; DijkstraGraph keeps one per thread, so
+ * that searches allocate nothing once the arrays have grown to fit the graph.
+ */
+public class SearchWorkspace {
+
+    protected int generation = 0; // stamp of the current search
+    protected int[] reachedStamps = new int[0]; // generation that last reached each id
+    protected int[] settledStamps = new int[0]; // generation that last settled each id
+    protected double[] costs = new double[0];
+    protected int[] predecessors = new int[0];
+    protected IndexedMinHeap heap = new IndexedMinHeap(0, 4);
+
+    /**
+     * Starts a new search over ids below a bound. The last search is forgotten
+     * without touching its arrays, unless they must grow; only ids it left
+     * queued are removed from the heap.
+     *
+     * @param bound a number greater than every id the search will reach
+     * @param arity the number of children of each node of the heap
+     */
+    public void begin(int bound, int arity) {
+        if (bound > costs.length) {
+            int capacity = Math.max(bound, costs.length * 2);
+            reachedStamps = Arrays.copyOf(reachedStamps, capacity);
+            settledStamps = Arrays.copyOf(settledStamps, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            predecessors = Arrays.copyOf(predecessors, capacity);
+        }
+        if (heap.arity != arity)
+            heap = new IndexedMinHeap(costs.length, arity);
+        else
+            heap.ensureCapacity(costs.length);
+        heap.clear();
+        if (++generation == Integer.MAX_VALUE) {
+            // stamps would wrap around into ones still in the arrays
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Return the cost of the best path to an id found by the current search.
+     *
+     * @param id the id to look up
+     * @return the cost, or positive infinity if the id was not reached
+     */
+    public double costOf(int id) {
+        return reachedStamps[id] == generation ? costs[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the id before an id on the best path the current search found.
+     *
+     * @param id an id reached by the current search
+     * @return the previous id, or -1 for the start
+     */
+    public int predecessorOf(int id) {
+        return predecessors[id];
+    }
+
+    /**
+     * Records a path to an id if it is cheaper than the best one found so far,
+     * and queues the id.
+     *
+     * @param id the id reached
+     * @param cost the cost of the new path
+     * @param predecessor the id before it on the new path, or -1 for the start
+     * @return true if the new path was recorded
+     */
+    public boolean reach(int id, double cost, int predecessor) {
+        if (reachedStamps[id] == generation && cost >= costs[id])
+            return false;
+        reachedStamps[id] = generation;
+        costs[id] = cost;
+        predecessors[id] = predecessor;
+        heap.insertOrDecrease(id, cost);
+        return true;
+    }
+
+    /**
+     * Removes the cheapest queued id and marks it settled.
+     *
+     * @return the id settled, or -1 if none are queued
+     */
+    public int settleNext() {
+        if (heap.isEmpty())
+            return -1;
+        int id = heap.poll();
+        settledStamps[id] = generation;
+        return id;
+    }
+
+    /**
+     * Checks whether the current search has settled an id.
+     *
+     * @param id the id to check
+     * @return true if its cost is final
+     */
+    public boolean isSettled(int id) {
+        return settledStamps[id] == generation;
+    }
+
+    /**
+     * Tests that each search starts empty, including across a generation
+     * wraparound, and that arrays grow to fit larger graphs
+     */
+    @Test
+    public void testGenerations() {
+        SearchWorkspace workspace = new SearchWorkspace();
+        workspace.begin(4, 4);
+        Assertions.assertTrue(workspace.reach(2, 5, -1));
+        Assertions.assertFalse(workspace.reach(2, 6, 1));
+        Assertions.assertEquals(2, workspace.settleNext());
+        Assertions.assertTrue(workspace.isSettled(2));
+        Assertions.assertEquals(-1, workspace.settleNext());
+        workspace.begin(100, 2);
+        Assertions.assertFalse(workspace.isSettled(2));
+        Assertions.assertEquals(Double.valueOf(Double.POSITIVE_INFINITY),
+                Double.valueOf(workspace.costOf(2)));
+        workspace.reach(99, 1, -1);
+        workspace.generation = Integer.MAX_VALUE - 1;
+        workspace.reachedStamps[3] = 1;
+        workspace.begin(100, 2);
+        Assertions.assertEquals(1, workspace.generation);
+        Assertions.assertEquals(Double.valueOf(Double.POSITIVE_INFINITY),
+                Double.valueOf(workspace.costOf(3)));
+        Assertions.assertEquals(-1, workspace.settleNext());
+    }
+}
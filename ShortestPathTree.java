@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The shortest paths from one source node to every node of a DijkstraGraph,
+ * as the cost of reaching each node id and the id of the node before it. Any
+ * path or cost from the source is then read off the tree in time proportional
+ * to the path length, with no further search. A tree describes the graph as
+ * it was when the tree was built, and refuses queries once the graph changes.
+ */
+public class ShortestPathTree<NodeType> {
+
+    protected final DijkstraGraph<NodeType, ?> graph;
+    protected final long version; // modification count of the graph when built
+    protected final int source;
+    protected final double[] costs; // cost from the source, by id
+    protected final int[] predecessors; // id of the previous node, or -1 for the source
+
+    /**
+     * Creates a new ShortestPathTree from the results of a one-to-all search.
+     *
+     * @param graph the graph that was searched
+     * @param version the modification count of the graph before the search
+     * @param source the id of the node the search started from
+     * @param costs the cost of reaching every id, positive infinity if unreached
+     * @param predecessors the previous id on the path to every reached id
+     */
+    public ShortestPathTree(DijkstraGraph<NodeType, ?> graph, long version, int source,
+            double[] costs, int[] predecessors) {
+        this.graph = graph;
+        this.version = version;
+        this.source = source;
+        this.costs = costs;
+        this.predecessors = predecessors;
+    }
+
+    /**
+     * Checks whether the graph is unchanged since this tree was built.
+     *
+     * @return true if the tree still describes its graph
+     */
+    public boolean isCurrent() {
+        return version == graph.getModCount();
+    }
+
+    /**
+     * Retrieves the data of the node the tree was built from.
+     *
+     * @return the source of every path in this tree
+     */
+    public NodeType getSource() {
+        checkCurrent();
+        return graph.nodeOf(source);
+    }
+
+    /**
+     * Returns the cost of the shortest path from the source to a node.
+     *
+     * @param end the data item in the destination node for the path
+     * @return the total cost of the shortest path
+     * @throws NoSuchElementException if end cannot be found or is not reachable
+     * @throws IllegalStateException if the graph changed since the tree was built
+     */
+    public double costTo(NodeType end) {
+        return costs[reachedId(end)];
+    }
+
+    /**
+     * Returns the sequence of nodes in the shortest path from the source to a
+     * node.
+     *
+     * @param end the data item in the destination node for the path
+     * @return List of nodes in the shortest path order
+     * @throws NoSuchElementException if end cannot be found or is not reachable
+     * @throws IllegalStateException if the graph changed since the tree was built
+     */
+    public List<NodeType> pathTo(NodeType end) {
+        int id = reachedId(end);
+        int length = 0;
+        for (int step = id; step >= 0; step = predecessors[step])
+            length++;
+        List<NodeType> path = new ArrayList<>(length);
+        for (int i = 0; i < length; i++)
+            path.add(null);
+        for (int step = id, i = length - 1; step >= 0; step = predecessors[step], i--)
+            path.set(i, graph.nodeOf(step));
+        return path;
+    }
+
+    /**
+     * Returns the number of bytes held by the arrays of this tree.
+     *
+     * @return the approximate memory use of this tree
+     */
+    public long getMemoryBytes() {
+        return (long) costs.length * Double.BYTES + (long) predecessors.length * Integer.BYTES;
+    }
+
+    // the id of a node the source reaches
+    protected int reachedId(NodeType end) {
+        checkCurrent();
+        int id = end == null ? -1 : graph.idOf(end);
+        if (id < 0 || id >= costs.length)
+            throw new NoSuchElementException("End node not found.");
+        if (costs[id] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("Path does not exist.");
+        return id;
+    }
+
+    protected void checkCurrent() {
+        if (!isCurrent())
+            throw new IllegalStateException("Graph changed since the tree was built.");
+    }
+}
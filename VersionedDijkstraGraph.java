@@ -0,0 +1,759 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Multi-version directed graph for concurrent readers and writers. Every
+ * mutation builds a new immutable Version and publishes it atomically, and
+ * every query runs against the version that was current when it started, so
+ * readers never lock and never see a half-applied change. Versions share all
+ * unchanged structure: nodes are stored by dense id in fixed-size chunks, and
+ * a mutation copies only the chunk table and the chunks it touches.
+ */
+public class VersionedDijkstraGraph<NodeType> implements GraphADT<NodeType, Double> {
+
+    protected static final int CHUNK_BITS = 6;
+    protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Immutable list of the edges leaving or entering one node, sorted by the
+    // id of the node at the other end
+    protected static final class Row {
+        public static final Row EMPTY = new Row(new int[0], new double[0]);
+
+        public final int[] ends;
+        public final double[] weights;
+
+        public Row(int[] ends, double[] weights) {
+            this.ends = ends;
+            this.weights = weights;
+        }
+
+        // finds the position of the edge toward end, or a negative insertion point
+        public int indexOf(int end) {
+            return Arrays.binarySearch(ends, end);
+        }
+
+        // returns a copy of this row with the edge toward end added or updated
+        public Row with(int end, double weight) {
+            int index = indexOf(end);
+            if (index >= 0) {
+                double[] newWeights = weights.clone();
+                newWeights[index] = weight;
+                return new Row(ends, newWeights);
+            }
+            index = -index - 1;
+            int[] newEnds = new int[ends.length + 1];
+            double[] newWeights = new double[ends.length + 1];
+            System.arraycopy(ends, 0, newEnds, 0, index);
+            System.arraycopy(weights, 0, newWeights, 0, index);
+            newEnds[index] = end;
+            newWeights[index] = weight;
+            System.arraycopy(ends, index, newEnds, index + 1, ends.length - index);
+            System.arraycopy(weights, index, newWeights, index + 1, ends.length - index);
+            return new Row(newEnds, newWeights);
+        }
+
+        // returns a copy of this row without the edge toward end
+        public Row without(int end) {
+            int index = indexOf(end);
+            if (index < 0)
+                return this;
+            int[] newEnds = new int[ends.length - 1];
+            double[] newWeights = new double[ends.length - 1];
+            System.arraycopy(ends, 0, newEnds, 0, index);
+            System.arraycopy(weights, 0, newWeights, 0, index);
+            System.arraycopy(ends, index + 1, newEnds, index, newEnds.length - index);
+            System.arraycopy(weights, index + 1, newWeights, index, newEnds.length - index);
+            return new Row(newEnds, newWeights);
+        }
+    }
+
+    // The data and edge rows of CHUNK_SIZE consecutive node ids. A chunk is
+    // never changed once it belongs to a published version.
+    protected static final class Chunk {
+        public final Object[] data = new Object[CHUNK_SIZE];
+        public final Row[] leaving = new Row[CHUNK_SIZE];
+        public final Row[] entering = new Row[CHUNK_SIZE];
+
+        public Chunk copy() {
+            Chunk copy = new Chunk();
+            System.arraycopy(data, 0, copy.data, 0, CHUNK_SIZE);
+            System.arraycopy(leaving, 0, copy.leaving, 0, CHUNK_SIZE);
+            System.arraycopy(entering, 0, copy.entering, 0, CHUNK_SIZE);
+            return copy;
+        }
+    }
+
+    // One immutable state of the graph. Queries on a Version always see the
+    // same nodes and edges, no matter what writers publish in the meantime.
+    public class Version {
+        protected final long number;
+        protected final Chunk[] chunks;
+        protected final int idBound;
+        protected final int nodeCount;
+        protected final int edgeCount;
+
+        protected Version(long number, Chunk[] chunks, int idBound, int nodeCount,
+                int edgeCount) {
+            this.number = number;
+            this.chunks = chunks;
+            this.idBound = idBound;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+        }
+
+        /**
+         * Returns the number of this version. Each published version's number
+         * is one more than the version it replaced.
+         *
+         * @return the version number
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        // the data of the node with an id, or null if there is none
+        @SuppressWarnings("unchecked")
+        protected NodeType dataOf(int id) {
+            if (id < 0 || id >= idBound || chunks[id >>> CHUNK_BITS] == null)
+                return null;
+            return (NodeType) chunks[id >>> CHUNK_BITS].data[id & (CHUNK_SIZE - 1)];
+        }
+
+        // the id of the node with some data in this version, or -1
+        protected int idOf(NodeType data) {
+            if (data == null)
+                return -1;
+            Integer id = ids.getOrNull(data);
+            return id == null || dataOf(id) == null ? -1 : id;
+        }
+
+        protected Row leaving(int id) {
+            return chunks[id >>> CHUNK_BITS].leaving[id & (CHUNK_SIZE - 1)];
+        }
+
+        protected Row entering(int id) {
+            return chunks[id >>> CHUNK_BITS].entering[id & (CHUNK_SIZE - 1)];
+        }
+
+        /**
+         * Check whether this version contains a node with the provided data.
+         *
+         * @param data the node contents to check for
+         * @return true if data item is stored in a node, or false otherwise
+         */
+        public boolean containsNode(NodeType data) {
+            return idOf(data) >= 0;
+        }
+
+        /**
+         * Retrieves a list of all node data in this version.
+         *
+         * @return list of all node data
+         */
+        public List<NodeType> getAllNodes() {
+            List<NodeType> all = new ArrayList<>(nodeCount);
+            for (int id = 0; id < idBound; id++) {
+                NodeType data = dataOf(id);
+                if (data != null)
+                    all.add(data);
+            }
+            return all;
+        }
+
+        /**
+         * Return the number of nodes in this version.
+         *
+         * @return the number of nodes
+         */
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * Return the number of edges in this version.
+         *
+         * @return the number of edges
+         */
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * Check if an edge is in this version.
+         *
+         * @param pred the data item contained in the source node for the edge
+         * @param succ the data item contained in the target node for the edge
+         * @return true if the edge is found, or false otherwise
+         */
+        public boolean containsEdge(NodeType pred, NodeType succ) {
+            int predId = idOf(pred);
+            int succId = idOf(succ);
+            return predId >= 0 && succId >= 0 && leaving(predId).indexOf(succId) >= 0;
+        }
+
+        /**
+         * Return the weight of a specific edge in this version.
+         *
+         * @param pred the data item contained in the source node for the edge
+         * @param succ the data item contained in the target node for the edge
+         * @return the weight of the edge between those nodes
+         * @throws NoSuchElementException if either node or the edge between them
+         *                                are not found in this version
+         */
+        public double getEdgeWeight(NodeType pred, NodeType succ) {
+            int predId = idOf(pred);
+            int succId = idOf(succ);
+            int index = predId < 0 || succId < 0 ? -1 : leaving(predId).indexOf(succId);
+            if (index < 0)
+                throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+            return leaving(predId).weights[index];
+        }
+
+        /**
+         * Returns the nodes along the shortest path between two nodes in this
+         * version.
+         *
+         * @param start the data item in the starting node for the path
+         * @param end the data item in the destination node for the path
+         * @return list of data item from node along this shortest path
+         * @throws NoSuchElementException if either node is not found, or there
+         *         is no path from start to end
+         */
+        public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+            int[] predecessors = new int[idBound];
+            int startId = idOf(start);
+            int endId = idOf(end);
+            search(startId, endId, predecessors);
+            LinkedList<NodeType> path = new LinkedList<>();
+            for (int id = endId; id != startId; id = predecessors[id])
+                path.addFirst(dataOf(id));
+            path.addFirst(start);
+            return path;
+        }
+
+        /**
+         * Returns the cost of the shortest path between two nodes in this
+         * version.
+         *
+         * @param start the data item in the starting node for the path
+         * @param end the data item in the destination node for the path
+         * @return the cost of the shortest path between these nodes
+         * @throws NoSuchElementException if either node is not found, or there
+         *         is no path from start to end
+         */
+        public double shortestPathCost(NodeType start, NodeType end) {
+            return search(idOf(start), idOf(end), new int[idBound]);
+        }
+
+        /**
+         * Returns the nodes, edge weights and costs of the shortest path
+         * between two nodes in this version.
+         *
+         * @param start the data item in the starting node for the path
+         * @param end the data item in the destination node for the path
+         * @return the nodes, edge weights and costs of the shortest path
+         * @throws NoSuchElementException if either node is not found, or there
+         *         is no path from start to end
+         */
+        public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+            int[] predecessors = new int[idBound];
+            int startId = idOf(start);
+            int endId = idOf(end);
+            search(startId, endId, predecessors);
+            int length = 1;
+            for (int id = endId; id != startId; id = predecessors[id])
+                length++;
+            List<NodeType> path = new ArrayList<>(length);
+            double[] legs = new double[length - 1];
+            int[] ids = new int[length];
+            ids[length - 1] = endId;
+            for (int i = length - 1; i > 0; i--)
+                ids[i - 1] = predecessors[ids[i]];
+            for (int i = 0; i < length; i++) {
+                path.add(dataOf(ids[i]));
+                if (i > 0) {
+                    Row row = leaving(ids[i - 1]);
+                    legs[i - 1] = row.weights[row.indexOf(ids[i])];
+                }
+            }
+            return new PathResult<>(path, legs);
+        }
+
+        // runs Dijkstra's algorithm between two ids, recording predecessors
+        protected double search(int start, int end, int[] predecessors) {
+            if (start < 0 || end < 0)
+                throw new NoSuchElementException("Start or end node not found.");
+            boolean[] settled = new boolean[idBound];
+            IndexedMinHeap heap = new IndexedMinHeap(idBound);
+            heap.insertOrDecrease(start, 0);
+            predecessors[start] = start;
+            while (!heap.isEmpty()) {
+                int id = heap.peek();
+                double cost = heap.keyOf(id);
+                heap.poll();
+                settled[id] = true;
+                if (id == end)
+                    return cost;
+                Row row = leaving(id);
+                for (int i = 0; i < row.ends.length; i++)
+                    if (!settled[row.ends[i]]
+                            && heap.insertOrDecrease(row.ends[i], cost + row.weights[i]))
+                        predecessors[row.ends[i]] = id;
+            }
+            throw new NoSuchElementException("Path does not exist.");
+        }
+    }
+
+    // A mutable copy of a version, used by one writer to build the next
+    // version. Each chunk is copied at most once, on its first change.
+    public class Batch {
+        protected Chunk[] chunks;
+        protected boolean[] owned;
+        protected int idBound;
+        protected int nodeCount;
+        protected int edgeCount;
+        protected boolean changed = false;
+
+        protected Batch(Version base) {
+            chunks = base.chunks.clone();
+            owned = new boolean[chunks.length];
+            idBound = base.idBound;
+            nodeCount = base.nodeCount;
+            edgeCount = base.edgeCount;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected NodeType dataOf(int id) {
+            if (id < 0 || id >= idBound || chunks[id >>> CHUNK_BITS] == null)
+                return null;
+            return (NodeType) chunks[id >>> CHUNK_BITS].data[id & (CHUNK_SIZE - 1)];
+        }
+
+        protected int idOf(NodeType data) {
+            Integer id = ids.getOrNull(data);
+            return id == null || dataOf(id) == null ? -1 : id;
+        }
+
+        // the chunk holding an id, copied first if a published version shares it
+        protected Chunk writableChunk(int id) {
+            int index = id >>> CHUNK_BITS;
+            if (index >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(index + 1, chunks.length * 2));
+                owned = Arrays.copyOf(owned, chunks.length);
+            }
+            if (!owned[index]) {
+                chunks[index] = chunks[index] == null ? new Chunk() : chunks[index].copy();
+                owned[index] = true;
+            }
+            changed = true;
+            return chunks[index];
+        }
+
+        /**
+         * Insert a new node.
+         *
+         * @param data is the data item stored in the new node
+         * @return true if the data is unique and was inserted, or false if this
+         *         data is already in the graph
+         * @throws NullPointerException if data is null
+         */
+        public boolean insertNode(NodeType data) {
+            Integer id = ids.getOrNull(data); // throws NPE when data's null
+            if (id == null) {
+                // ids are never removed from the map, so pinned versions can
+                // keep resolving every node they contain
+                id = nextId++;
+                ids.put(data, id);
+            } else if (dataOf(id) != null) {
+                return false;
+            }
+            Chunk chunk = writableChunk(id);
+            int slot = id & (CHUNK_SIZE - 1);
+            chunk.data[slot] = data;
+            chunk.leaving[slot] = Row.EMPTY;
+            chunk.entering[slot] = Row.EMPTY;
+            idBound = Math.max(idBound, id + 1);
+            nodeCount++;
+            return true;
+        }
+
+        /**
+         * Remove a node, along with all edges adjacent to it.
+         *
+         * @param data is the data item stored in the node to be removed
+         * @return true if the node was found and removed, or false otherwise
+         * @throws NullPointerException if data is null
+         */
+        public boolean removeNode(NodeType data) {
+            int id = idOf(data); // throws NPE when data's null
+            if (id < 0)
+                return false;
+            Chunk chunk = writableChunk(id);
+            int slot = id & (CHUNK_SIZE - 1);
+            Row leaving = chunk.leaving[slot];
+            Row entering = chunk.entering[slot];
+            for (int succ : leaving.ends)
+                if (succ != id)
+                    setEntering(succ, enteringOf(succ).without(id));
+            for (int pred : entering.ends)
+                if (pred != id)
+                    setLeaving(pred, leavingOf(pred).without(id));
+            int selfLoops = leaving.indexOf(id) >= 0 ? 1 : 0;
+            edgeCount -= leaving.ends.length + entering.ends.length - selfLoops;
+            chunk.data[slot] = null;
+            chunk.leaving[slot] = null;
+            chunk.entering[slot] = null;
+            nodeCount--;
+            return true;
+        }
+
+        /**
+         * Insert a new directed edge, or update the weight of an existing one.
+         *
+         * @param pred   is the data item contained in the edge's predecesor node
+         * @param succ   is the data item contained in the edge's successor node
+         * @param weight is the non-negative weight of the edge
+         * @return true if the edge could be inserted or updated, or
+         *         false if the pred or succ data are not found in any node
+         */
+        public boolean insertEdge(NodeType pred, NodeType succ, double weight) {
+            int predId = pred == null ? -1 : idOf(pred);
+            int succId = succ == null ? -1 : idOf(succ);
+            if (predId < 0 || succId < 0)
+                return false;
+            Row leaving = leavingOf(predId);
+            if (leaving.indexOf(succId) < 0)
+                edgeCount++;
+            setLeaving(predId, leaving.with(succId, weight));
+            setEntering(succId, enteringOf(succId).with(predId, weight));
+            return true;
+        }
+
+        /**
+         * Remove a directed edge.
+         *
+         * @param pred the data item contained in the source node for the edge
+         * @param succ the data item contained in the target node for the edge
+         * @return true if the edge was removed, or false if it was not found
+         */
+        public boolean removeEdge(NodeType pred, NodeType succ) {
+            int predId = pred == null ? -1 : idOf(pred);
+            int succId = succ == null ? -1 : idOf(succ);
+            if (predId < 0 || succId < 0 || leavingOf(predId).indexOf(succId) < 0)
+                return false;
+            setLeaving(predId, leavingOf(predId).without(succId));
+            setEntering(succId, enteringOf(succId).without(predId));
+            edgeCount--;
+            return true;
+        }
+
+        protected Row leavingOf(int id) {
+            return chunks[id >>> CHUNK_BITS].leaving[id & (CHUNK_SIZE - 1)];
+        }
+
+        protected Row enteringOf(int id) {
+            return chunks[id >>> CHUNK_BITS].entering[id & (CHUNK_SIZE - 1)];
+        }
+
+        protected void setLeaving(int id, Row row) {
+            writableChunk(id).leaving[id & (CHUNK_SIZE - 1)] = row;
+        }
+
+        protected void setEntering(int id, Row row) {
+            writableChunk(id).entering[id & (CHUNK_SIZE - 1)] = row;
+        }
+    }
+
+    // id of every node ever inserted, by data; entries are never removed
+    protected final MapADT<NodeType, Integer> ids = new ConcurrentHashtableMap<>();
+    protected int nextId = 0; // only read and written while holding the writer lock
+    protected volatile Version current =
+            new Version(0, new Chunk[0], 0, 0, 0);
+
+    /**
+     * Returns the current version of the graph. Callers that make several
+     * queries can pin this version, so they all see the same graph.
+     *
+     * @return the latest published version
+     */
+    public Version pin() {
+        return current;
+    }
+
+    /**
+     * Applies several mutations as one new version. Readers see either none
+     * or all of them, and chunks touched by more than one mutation are only
+     * copied once.
+     *
+     * @param mutations applies the changes to the batch it is given
+     * @return the version that was published, or the current one if the
+     *         mutations changed nothing
+     */
+    public synchronized Version update(Consumer<Batch> mutations) {
+        Batch batch = new Batch(current);
+        mutations.accept(batch);
+        if (batch.changed)
+            current = new Version(current.number + 1, batch.chunks, batch.idBound,
+                    batch.nodeCount, batch.edgeCount);
+        return current;
+    }
+
+    /**
+     * Insert a new node into the graph, as a new version.
+     *
+     * @param data is the data item stored in the new node
+     * @return true if the data is unique and can be inserted into a new node,
+     *         or false if this data is already in the graph
+     * @throws NullPointerException if data is null
+     */
+    public synchronized boolean insertNode(NodeType data) {
+        boolean[] result = new boolean[1];
+        update(batch -> result[0] = batch.insertNode(data));
+        return result[0];
+    }
+
+    /**
+     * Remove a node and all its adjacent edges from the graph, as a new version.
+     *
+     * @param data is the data item stored in the node to be removed
+     * @return true if a vertex with data is found and removed, or
+     *         false if that data value is not found in the graph
+     * @throws NullPointerException if data is null
+     */
+    public synchronized boolean removeNode(NodeType data) {
+        boolean[] result = new boolean[1];
+        update(batch -> result[0] = batch.removeNode(data));
+        return result[0];
+    }
+
+    /**
+     * Insert or update a directed edge with a primitive weight, as a new
+     * version.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public synchronized boolean insertEdge(NodeType pred, NodeType succ, double weight) {
+        boolean[] result = new boolean[1];
+        update(batch -> result[0] = batch.insertEdge(pred, succ, weight));
+        return result[0];
+    }
+
+    /**
+     * Insert or update a directed edge, as a new version.
+     *
+     * @param pred   is the data item contained in the new edge's predecesor node
+     * @param succ   is the data item contained in the new edge's successor node
+     * @param weight is the non-negative weight of the new edge
+     * @return true if the edge could be inserted or updated, or
+     *         false if the pred or succ data are not found in any graph nodes
+     */
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        return insertEdge(pred, succ, weight.doubleValue());
+    }
+
+    /**
+     * Remove an edge from the graph, as a new version.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge could be removed, or
+     *         false if such an edge is not found in the graph
+     */
+    public synchronized boolean removeEdge(NodeType pred, NodeType succ) {
+        boolean[] result = new boolean[1];
+        update(batch -> result[0] = batch.removeEdge(pred, succ));
+        return result[0];
+    }
+
+    /**
+     * Check whether the current version contains a node with the provided data.
+     *
+     * @param data the node contents to check for
+     * @return true if data item is stored in a node, or false otherwise
+     */
+    public boolean containsNode(NodeType data) {
+        return current.containsNode(data);
+    }
+
+    /**
+     * Retrieves a list of all node data in the current version.
+     *
+     * @return list of all node data
+     */
+    public List<NodeType> getAllNodes() {
+        return current.getAllNodes();
+    }
+
+    /**
+     * Return the number of nodes in the current version.
+     *
+     * @return the number of nodes in the graph
+     */
+    public int getNodeCount() {
+        return current.getNodeCount();
+    }
+
+    /**
+     * Check if an edge is in the current version.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge is found in the graph, or false other
+     */
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return current.containsEdge(pred, succ);
+    }
+
+    /**
+     * Return the weight of a specific edge in the current version.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the non-negative weight of the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this graph
+     */
+    public Double getEdge(NodeType pred, NodeType succ) {
+        return current.getEdgeWeight(pred, succ);
+    }
+
+    /**
+     * Return the number of edges in the current version.
+     *
+     * @return the number of edges in the graph
+     */
+    public int getEdgeCount() {
+        return current.getEdgeCount();
+    }
+
+    /**
+     * Returns the nodes along the shortest path between two nodes, in the
+     * version that is current when the search starts.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException if either node is not found, or there is
+     *         no path from start to end
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        return current.shortestPathData(start, end);
+    }
+
+    /**
+     * Returns the cost of the shortest path between two nodes, in the version
+     * that is current when the search starts.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException if either node is not found, or there is
+     *         no path from start to end
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return current.shortestPathCost(start, end);
+    }
+
+    /**
+     * Returns the nodes, edge weights and costs of the shortest path between
+     * two nodes, in the version that is current when the search starts.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end the data item in the destination node for the path
+     * @return the nodes, edge weights and costs of the shortest path
+     * @throws NoSuchElementException if either node is not found, or there is
+     *         no path from start to end
+     */
+    public PathResult<NodeType> shortestPath(NodeType start, NodeType end) {
+        return current.shortestPath(start, end);
+    }
+
+    /**
+     * Tests that a pinned version keeps answering from its own state while
+     * newer versions are published, and that versions share unchanged chunks
+     */
+    @Test
+    public void testPinnedVersions() {
+        VersionedDijkstraGraph<Integer> graph = new VersionedDijkstraGraph<>();
+        graph.update(batch -> {
+            for (int i = 0; i < 200; i++)
+                batch.insertNode(i);
+            for (int i = 0; i < 199; i++)
+                batch.insertEdge(i, i + 1, 1.0);
+        });
+        VersionedDijkstraGraph<Integer>.Version pinned = graph.pin();
+        Assertions.assertEquals(1, pinned.getNumber());
+        Assertions.assertEquals(199.0, pinned.shortestPathCost(0, 199));
+
+        graph.update(batch -> batch.insertEdge(0, 150, 2.0));
+        graph.removeNode(100);
+        VersionedDijkstraGraph<Integer>.Version latest = graph.pin();
+        Assertions.assertEquals(3, latest.getNumber());
+        Assertions.assertEquals(51.0, graph.shortestPathCost(0, 199));
+        Assertions.assertFalse(graph.containsNode(100));
+        Assertions.assertEquals(198, graph.getEdgeCount());
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> graph.shortestPathData(0, 100));
+        // the pinned version is unchanged, and shares the untouched chunks
+        Assertions.assertEquals(199.0, pinned.shortestPathCost(0, 199));
+        Assertions.assertTrue(pinned.containsNode(100));
+        Assertions.assertEquals(199, pinned.getEdgeCount());
+        Assertions.assertSame(pinned.chunks[3], latest.chunks[3]);
+        Assertions.assertNotSame(pinned.chunks[1], latest.chunks[1]);
+
+        graph.insertNode(100);
+        Assertions.assertEquals(0, graph.getAllNodes().indexOf(0));
+        Assertions.assertFalse(graph.containsEdge(99, 100));
+        Assertions.assertEquals(Arrays.asList(0, 150, 151), graph.shortestPathData(0, 151));
+    }
+
+    /**
+     * Tests that readers running alongside a writer always see one of the
+     * published states, never a mix of two
+     */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        VersionedDijkstraGraph<String> graph = new VersionedDijkstraGraph<>();
+        graph.update(batch -> {
+            for (String node : new String[] {"A", "B", "C"})
+                batch.insertNode(node);
+            batch.insertEdge("A", "B", 1);
+            batch.insertEdge("B", "C", 1);
+            batch.insertEdge("A", "C", 5);
+        });
+        boolean[] failed = new boolean[1];
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    VersionedDijkstraGraph<String>.Version version = graph.pin();
+                    double cost = version.shortestPathCost("A", "C");
+                    int length = version.shortestPathData("A", "C").size();
+                    // with the detour closed, A->C is direct at cost 5
+                    if (!(cost == 2 && length == 3) && !(cost == 5 && length == 2))
+                        failed[0] = true;
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < 500; i++) {
+            // closing and reopening the detour are both atomic batches
+            graph.update(batch -> batch.removeEdge("B", "C"));
+            graph.update(batch -> batch.insertEdge("B", "C", 1));
+        }
+        for (Thread reader : readers)
+            reader.join();
+        Assertions.assertFalse(failed[0]);
+    }
+}
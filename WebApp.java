@@ -11,6 +11,7 @@ import java.io.File;
 import java.util.Scanner;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
 /**
@@ -28,6 +29,11 @@ import java.util.stream.Stream;
  * Then visit through browser via https://cs400-web.cs.wisc.edu/CS_LOGIN/
  */
 public class WebApp {
+		// one frontend, backend and graph shared by every request the server
+		// handles; its graph is a ConcurrentDijkstraGraph, so requests can be
+		// answered on many threads at once
+		private static FrontendInterface sharedFrontend;
+
     public static void main(String[] args) throws IOException {
 				// expects the port number as a command line argument to this program
 				// or if a non-numeric argument is passed treat this like the query
@@ -48,11 +54,16 @@ public class WebApp {
 						return;
 				}
 				
+				// load the graph once, rather than once per request
+				sharedFrontend = createWorkingFrontend("./campus.dot");
+
 				// configure and start server on this port, responding in this way
 				InetSocketAddress address = new InetSocketAddress(portNumber);
 				HttpServer server = HttpServer.create(address,8);
 				HttpContext context = server.createContext("/");
 				context.setHandler( WebApp::requestHandler );
+				server.setExecutor(Executors.newFixedThreadPool(
+						Runtime.getRuntime().availableProcessors()));
 				System.out.println("Starting Campus Navigator Server...");
 				server.start();
     }
@@ -68,8 +79,8 @@ public class WebApp {
 																					exchange.getRequestURI().getQuery());
 						System.out.println("Query includes args: "+keyValuePairs);
 	    
-						// create backend and frontend objects to respond to this request
-						FrontendInterface frontend = createWorkingFrontend("./campus.dot");
+						// respond using the frontend shared by all requests
+						FrontendInterface frontend = sharedFrontend;
 						// compute answer to user's requested problem based on query args:
 						String response = generateResponseHTML(keyValuePairs,frontend);
 						// generate HTML prompts for user for make next requests